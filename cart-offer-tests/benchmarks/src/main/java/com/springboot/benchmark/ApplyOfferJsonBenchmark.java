@@ -0,0 +1,74 @@
+package com.springboot.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.springboot.controller.ApplyOfferRequest;
+import com.springboot.controller.ApplyOfferResponse;
+import com.springboot.controller.CartOfferCodec;
+import com.springboot.controller.OfferRequest;
+import com.springboot.offer.OfferStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end request handling minus HTTP: decode an apply_offer body, apply
+ * the best offer, encode the response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApplyOfferJsonBenchmark {
+
+    private static final byte[] BODY =
+            "{\"cart_value\":200,\"user_id\":1,\"restaurant_id\":1}".getBytes(StandardCharsets.UTF_8);
+
+    private OfferStore store;
+    private ObjectReader reader;
+    private ObjectWriter writer;
+
+    @Setup
+    public void setUp() {
+        store = new OfferStore();
+        store.addOffer(new OfferRequest(1, "FLATX", 10, Collections.singletonList("p1")));
+        store.addOffer(new OfferRequest(1, "FLATX%", 10, Collections.singletonList("p1")));
+        ObjectMapper mapper = new ObjectMapper();
+        reader = mapper.readerFor(ApplyOfferRequest.class);
+        writer = mapper.writerFor(ApplyOfferResponse.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        store.close();
+    }
+
+    @Benchmark
+    public byte[] jackson() throws Exception {
+        ApplyOfferRequest request = reader.readValue(BODY);
+        long cartValue = store.applyOffer(request.getRestaurantId(), "p1", request.getCartValue());
+        return writer.writeValueAsBytes(new ApplyOfferResponse(cartValue));
+    }
+
+    @Benchmark
+    public byte[] streamingCodec() throws Exception {
+        ApplyOfferRequest request = CartOfferCodec.readApplyOffer(BODY);
+        long cartValue = store.applyOffer(request.getRestaurantId(), "p1", request.getCartValue());
+        return CartOfferCodec.writeApplyOffer(cartValue);
+    }
+}
@@ -0,0 +1,83 @@
+package com.springboot.benchmark;
+
+import com.springboot.controller.OfferRequest;
+import com.springboot.offer.OfferStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offer lookup plus best-offer selection with {@code offersPerKey} offers
+ * registered for every (restaurant, segment) pair.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BestOfferBenchmark {
+
+    private static final String[] SEGMENTS = {"p1", "p2", "p3", "p4"};
+
+    @Param({"1", "8", "64"})
+    int offersPerKey;
+
+    @Param({"100000"})
+    int restaurants;
+
+    private OfferStore store;
+
+    @Setup
+    public void setUp() {
+        store = new OfferStore();
+        List<CompletableFuture<Boolean>> added = new ArrayList<>();
+        for (int r = 0; r < restaurants; r++) {
+            for (String segment : SEGMENTS) {
+                for (int i = 0; i < offersPerKey; i++) {
+                    added.add(store.submit(new OfferRequest(r, i % 2 == 0 ? "FLATX" : "FLATX%", 1 + i,
+                            Collections.singletonList(segment))));
+                }
+            }
+            if (added.size() > 10_000) {
+                CompletableFuture.allOf(added.toArray(new CompletableFuture<?>[0])).join();
+                added.clear();
+            }
+        }
+        CompletableFuture.allOf(added.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    @TearDown
+    public void tearDown() {
+        store.close();
+    }
+
+    @Benchmark
+    public long applyOffer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return store.applyOffer(random.nextInt(restaurants), SEGMENTS[random.nextInt(SEGMENTS.length)],
+                50 + random.nextInt(500));
+    }
+
+    @Benchmark
+    public long applyOfferNoMatch() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return store.applyOffer(restaurants + random.nextInt(restaurants), "p1", 200);
+    }
+}
@@ -0,0 +1,139 @@
+package com.springboot.benchmark;
+
+import com.springboot.controller.OfferRequest;
+import com.springboot.offer.OfferJournal;
+import com.springboot.offer.OfferListener;
+import com.springboot.offer.OfferStore;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memory footprint of a catalog of {@code pairs} (restaurant, segment) offer
+ * entries in each {@code offer.storage}. Every iteration loads a fresh store
+ * and reports, next to the load time, the retained heap and native memory per
+ * entry and the GC time and collections spent loading:
+ *
+ * <pre>
+ * java -jar benchmarks.jar OfferFootprintBenchmark -p pairs=1000000,4000000
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "-XX:MaxDirectMemorySize=6g"})
+public class OfferFootprintBenchmark {
+
+    private static final int SEGMENTS = 4;
+
+    @Param({"heap", "off-heap"})
+    String storage;
+
+    @Param({"1000000"})
+    int pairs;
+
+    private OfferRequest[] offers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        offers = new OfferRequest[pairs];
+        List<List<String>> segments = new ArrayList<>();
+        for (int s = 0; s < SEGMENTS; s++) {
+            segments.add(Collections.singletonList("p" + s));
+        }
+        for (int i = 0; i < pairs; i++) {
+            offers[i] = new OfferRequest(i / SEGMENTS, i % 2 == 0 ? "FLATX" : "FLATX%", 1 + i % 50,
+                    segments.get(i % SEGMENTS));
+        }
+    }
+
+    /**
+     * Footprint of the store loaded in the current iteration.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long heapBytesPerEntry;
+        public long nativeBytesPerEntry;
+        public long gcMillis;
+        public long gcCount;
+    }
+
+    @Benchmark
+    public int load(Footprint footprint) {
+        long heapBefore = retainedHeap();
+        long nativeBefore = directMemory();
+        long gcMillisBefore = gcMillis();
+        long gcCountBefore = gcCount();
+
+        try (OfferStore store = new OfferStore(10_000, 4096, 1, 100, storage, OfferJournal.NONE,
+                OfferListener.NONE)) {
+            CompletableFuture<?>[] added = new CompletableFuture<?>[offers.length];
+            for (int i = 0; i < offers.length; i++) {
+                added[i] = store.submit(offers[i]);
+            }
+            CompletableFuture.allOf(added).join();
+            added = null;
+
+            footprint.gcMillis = gcMillis() - gcMillisBefore;
+            footprint.gcCount = gcCount() - gcCountBefore;
+            int size = store.size();
+            footprint.heapBytesPerEntry = (retainedHeap() - heapBefore) / size;
+            footprint.nativeBytesPerEntry = (directMemory() - nativeBefore) / size;
+            return size;
+        }
+    }
+
+    private static long retainedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long directMemory() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+}
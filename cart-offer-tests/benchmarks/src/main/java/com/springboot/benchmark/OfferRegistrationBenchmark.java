@@ -0,0 +1,88 @@
+package com.springboot.benchmark;
+
+import com.springboot.controller.OfferRequest;
+import com.springboot.offer.OfferStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offer registration into a store that already holds {@code restaurants}
+ * restaurants: one blocking {@link OfferStore#addOffer} at a time, and
+ * pipelined {@link OfferStore#submit} calls that the ingestion thread can batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OfferRegistrationBenchmark {
+
+    private static final int PIPELINE = 100;
+
+    @Param({"1000", "100000"})
+    int restaurants;
+
+    private OfferStore store;
+    private OfferRequest[] offers;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        store = new OfferStore();
+        offers = new OfferRequest[restaurants];
+        for (int i = 0; i < restaurants; i++) {
+            offers[i] = new OfferRequest(i, i % 2 == 0 ? "FLATX" : "FLATX%", 1 + i % 50,
+                    Collections.singletonList("p" + i % 4));
+        }
+        CompletableFuture.allOf(submitAll(offers)).join();
+        next = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        store.close();
+    }
+
+    private CompletableFuture<?>[] submitAll(OfferRequest[] batch) {
+        CompletableFuture<?>[] results = new CompletableFuture<?>[batch.length];
+        for (int i = 0; i < batch.length; i++) {
+            results[i] = store.submit(batch[i]);
+        }
+        return results;
+    }
+
+    @Benchmark
+    public boolean addOffer() {
+        OfferRequest offer = offers[next];
+        next = next + 1 == offers.length ? 0 : next + 1;
+        return store.addOffer(offer);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE)
+    public void submitPipelined() {
+        CompletableFuture<?>[] results = new CompletableFuture<?>[PIPELINE];
+        for (int i = 0; i < PIPELINE; i++) {
+            results[i] = store.submit(offers[next]);
+            next = next + 1 == offers.length ? 0 : next + 1;
+        }
+        CompletableFuture.allOf(results).join();
+    }
+}
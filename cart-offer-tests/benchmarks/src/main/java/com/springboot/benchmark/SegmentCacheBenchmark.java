@@ -0,0 +1,57 @@
+package com.springboot.benchmark;
+
+import com.springboot.segment.SegmentCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link SegmentCache} hits against a warm working set, and misses that always
+ * go to a (free) loader.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SegmentCacheBenchmark {
+
+    private static final int USERS = 10_000;
+    private static final CompletableFuture<String> P1 = CompletableFuture.completedFuture("p1");
+
+    private SegmentCache warm;
+    private SegmentCache cold;
+    private final AtomicInteger nextUser = new AtomicInteger();
+
+    @Setup
+    public void setUp() {
+        warm = new SegmentCache(userId -> P1, USERS * 2, TimeUnit.HOURS.toMillis(1), TimeUnit.HOURS.toMillis(1));
+        for (int userId = 0; userId < USERS; userId++) {
+            warm.get(userId);
+        }
+        cold = new SegmentCache(userId -> P1, 100_000, TimeUnit.HOURS.toMillis(1), TimeUnit.HOURS.toMillis(1));
+    }
+
+    @Benchmark
+    public String hit() {
+        return warm.get(ThreadLocalRandom.current().nextInt(USERS));
+    }
+
+    @Benchmark
+    public String miss() {
+        return cold.get(nextUser.getAndIncrement());
+    }
+}
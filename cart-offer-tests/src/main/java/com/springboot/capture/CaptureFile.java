@@ -0,0 +1,113 @@
+package com.springboot.capture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Layout of a traffic capture written by {@link TrafficRecorder}.
+ *
+ * <pre>
+ * [int magic][int version][long startEpochMillis]
+ * records: [int length][byte kind][long offsetNanos][short status][int userId][byte segment]
+ *          ([short len][utf8 segment] if segment == SEGMENT)
+ *          [int len][request body][int len][response body]
+ * </pre>
+ *
+ * <p>{@code segment} is {@link #NO_LOOKUP} for requests that did not look up
+ * a segment, {@link #NO_SEGMENT} if the lookup found none. Records are only
+ * appended, so a capture cut short by a crash loses at most its incomplete
+ * last record, which {@link #read} skips.
+ */
+public final class CaptureFile {
+
+    static final int MAGIC = 0x43415054; // "CAPT"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+
+    private static final byte NO_LOOKUP = 0;
+    private static final byte NO_SEGMENT = 1;
+    private static final byte SEGMENT = 2;
+    private static final int FIXED_BYTES = 1 + 8 + 2 + 4 + 1 + 4 + 4;
+
+    private CaptureFile() {
+    }
+
+    static ByteBuffer header(long startEpochMillis) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putLong(startEpochMillis).flip();
+        return header;
+    }
+
+    /**
+     * Returns the request as a complete record, length prefix included.
+     */
+    static byte[] encode(CapturedRequest request) {
+        byte[] segment = request.getSegment() == null ? null : request.getSegment().getBytes(StandardCharsets.UTF_8);
+        int length = FIXED_BYTES + (segment == null ? 0 : 2 + segment.length)
+                + request.getBody().length + request.getResponse().length;
+        ByteBuffer out = ByteBuffer.allocate(4 + length);
+        out.putInt(length).put((byte) request.getKind().ordinal()).putLong(request.getOffsetNanos())
+                .putShort((short) request.getStatus()).putInt(request.getUserId());
+        if (segment != null) {
+            out.put(SEGMENT).putShort((short) segment.length).put(segment);
+        } else {
+            out.put(request.isSegmentLookedUp() ? NO_SEGMENT : NO_LOOKUP);
+        }
+        out.putInt(request.getBody().length).put(request.getBody());
+        out.putInt(request.getResponse().length).put(request.getResponse());
+        return out.array();
+    }
+
+    /**
+     * Reads every complete record of the capture, in the order they were
+     * written.
+     *
+     * @throws IOException if the file is not a capture
+     */
+    public static List<CapturedRequest> read(Path path) throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int version = in.limit() < HEADER_BYTES ? 0 : in.getInt(4);
+        if (version != VERSION || in.getInt(0) != MAGIC) {
+            throw new IOException("Not a traffic capture: " + path);
+        }
+        in.position(HEADER_BYTES);
+        List<CapturedRequest> requests = new ArrayList<>();
+        while (in.remaining() >= 4) {
+            int length = in.getInt();
+            if (length < FIXED_BYTES || length > in.remaining()) {
+                break;
+            }
+            requests.add(decode(in));
+        }
+        return requests;
+    }
+
+    private static CapturedRequest decode(ByteBuffer in) {
+        CapturedRequest.Kind kind = CapturedRequest.Kind.values()[in.get()];
+        long offsetNanos = in.getLong();
+        int status = in.getShort() & 0xFFFF;
+        int userId = in.getInt();
+        byte segmentState = in.get();
+        String segment = segmentState == SEGMENT ? new String(bytes(in, in.getShort() & 0xFFFF), StandardCharsets.UTF_8)
+                : null;
+        byte[] body = bytes(in, in.getInt());
+        byte[] response = bytes(in, in.getInt());
+        return new CapturedRequest(kind, offsetNanos, userId, segmentState != NO_LOOKUP, segment, body, status,
+                response);
+    }
+
+    private static byte[] bytes(ByteBuffer in, int length) {
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,79 @@
+package com.springboot.capture;
+
+/**
+ * One request from a traffic capture, with the answer it got.
+ */
+public final class CapturedRequest {
+
+    public enum Kind {
+        APPLY_OFFER("/api/v1/cart/apply_offer"),
+        ADD_OFFER("/api/v1/offer");
+
+        private final String path;
+
+        Kind(String path) {
+            this.path = path;
+        }
+
+        public String getPath() {
+            return path;
+        }
+    }
+
+    private final Kind kind;
+    private final long offsetNanos;
+    private final int userId;
+    private final boolean segmentLookedUp;
+    private final String segment;
+    private final byte[] body;
+    private final int status;
+    private final byte[] response;
+
+    public CapturedRequest(Kind kind, long offsetNanos, int userId, boolean segmentLookedUp, String segment,
+                           byte[] body, int status, byte[] response) {
+        this.kind = kind;
+        this.offsetNanos = offsetNanos;
+        this.userId = userId;
+        this.segmentLookedUp = segmentLookedUp;
+        this.segment = segment;
+        this.body = body;
+        this.status = status;
+        this.response = response;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /** Arrival time, in nanoseconds since the capture started. */
+    public long getOffsetNanos() {
+        return offsetNanos;
+    }
+
+    /** user_id of an apply_offer request, 0 for other requests. */
+    public int getUserId() {
+        return userId;
+    }
+
+    /** True if the request looked up the user's segment. */
+    public boolean isSegmentLookedUp() {
+        return segmentLookedUp;
+    }
+
+    /** The segment the lookup resolved to, or null for none. */
+    public String getSegment() {
+        return segment;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public byte[] getResponse() {
+        return response;
+    }
+}
@@ -0,0 +1,224 @@
+package com.springboot.capture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records a sample of apply_offer and /api/v1/offer requests, with the
+ * segment each apply_offer resolved and the response it got, to a
+ * {@link CaptureFile} that can be replayed against another instance.
+ *
+ * <p>Off unless {@code capture.file} is set; each request is then recorded
+ * with probability {@code capture.sample-rate}. Request threads only copy
+ * their record into one of two direct buffers. A writer thread drains a full
+ * buffer to the file channel while the other fills, and flushes a partly
+ * filled one every {@code capture.flush-interval-ms}. Records that arrive
+ * while both buffers are full are dropped and counted, so a slow disk never
+ * holds up requests.
+ */
+@Component
+public class TrafficRecorder implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(TrafficRecorder.class);
+
+    private static final ByteBuffer CLOSE = ByteBuffer.allocate(0);
+
+    private final double sampleRate;
+    private final long flushIntervalMillis;
+    private final FileChannel channel;
+    private final long startNanos = System.nanoTime();
+    // Room for the other buffer and CLOSE.
+    private final BlockingQueue<ByteBuffer> filled = new ArrayBlockingQueue<>(2);
+    private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(1);
+    private final Thread writer;
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private ByteBuffer active;
+    private boolean closed;
+
+    public TrafficRecorder(@Value("${capture.file:}") String file,
+                           @Value("${capture.sample-rate:0.01}") double sampleRate,
+                           @Value("${capture.buffer-bytes:1048576}") int bufferBytes,
+                           @Value("${capture.flush-interval-ms:1000}") long flushIntervalMillis) throws IOException {
+        this.sampleRate = sampleRate;
+        this.flushIntervalMillis = flushIntervalMillis;
+        if (file.isEmpty()) {
+            this.channel = null;
+            this.writer = null;
+            return;
+        }
+        Path path = Paths.get(file).toAbsolutePath();
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = CaptureFile.header(System.currentTimeMillis());
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        this.active = ByteBuffer.allocateDirect(bufferBytes);
+        this.free.add(ByteBuffer.allocateDirect(bufferBytes));
+        this.writer = new Thread(this::drain, "traffic-capture");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        log.info("Capturing {}% of requests to {}", sampleRate * 100, path);
+    }
+
+    /**
+     * Decides whether to record the request that just arrived.
+     */
+    public boolean sample() {
+        return channel != null && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    /**
+     * Records an apply_offer request that arrived at {@code arrivalNanos}
+     * ({@link System#nanoTime()}).
+     */
+    public void recordApplyOffer(long arrivalNanos, byte[] body, int userId, boolean segmentLookedUp,
+                                 String segment, int status, byte[] response) {
+        append(new CapturedRequest(CapturedRequest.Kind.APPLY_OFFER, arrivalNanos - startNanos, userId,
+                segmentLookedUp, segment, body, status, response));
+    }
+
+    /**
+     * Records a /api/v1/offer request that arrived at {@code arrivalNanos}.
+     */
+    public void recordAddOffer(long arrivalNanos, byte[] body, int status, byte[] response) {
+        append(new CapturedRequest(CapturedRequest.Kind.ADD_OFFER, arrivalNanos - startNanos, 0, false, null,
+                body, status, response));
+    }
+
+    public boolean isEnabled() {
+        return channel != null;
+    }
+
+    /** Requests written to the capture. */
+    public long getRecorded() {
+        return recorded.sum();
+    }
+
+    /** Sampled requests left out because the writer fell behind. */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    private void append(CapturedRequest request) {
+        byte[] record = CaptureFile.encode(request);
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (active.remaining() < record.length) {
+                ByteBuffer next = record.length <= active.capacity() ? free.poll() : null;
+                if (next == null) {
+                    dropped.increment();
+                    return;
+                }
+                filled.add(active);
+                active = next;
+            }
+            active.put(record);
+        }
+        recorded.increment();
+    }
+
+    /**
+     * Writer thread: writes each buffer handed over, or the active one once a
+     * flush interval passes without one, and returns it for reuse.
+     */
+    private void drain() {
+        while (true) {
+            ByteBuffer buffer;
+            try {
+                buffer = filled.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (buffer == CLOSE) {
+                return;
+            }
+            if (buffer == null) {
+                buffer = takeActive();
+                if (buffer == null) {
+                    continue;
+                }
+            }
+            write(buffer);
+            free.add(buffer);
+        }
+    }
+
+    /**
+     * Swaps in the free buffer for a non-empty active one and returns the
+     * active one, or returns null.
+     */
+    private synchronized ByteBuffer takeActive() {
+        if (active.position() == 0) {
+            return null;
+        }
+        ByteBuffer next = free.poll();
+        if (next == null) {
+            return null;
+        }
+        ByteBuffer taken = active;
+        active = next;
+        return taken;
+    }
+
+    private void write(ByteBuffer buffer) {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            log.warn("Could not write traffic capture", e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    @Override
+    @PreDestroy
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        filled.add(CLOSE);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // The writer is done; whatever it left behind is still in order.
+        ByteBuffer buffer;
+        while ((buffer = filled.poll()) != null) {
+            if (buffer != CLOSE) {
+                write(buffer);
+            }
+        }
+        write(active);
+        channel.force(false);
+        channel.close();
+    }
+}
@@ -0,0 +1,34 @@
+package com.springboot.config;
+
+import com.springboot.execution.ExecutionMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+
+@Configuration
+public class ExecutionConfig {
+
+    @Bean
+    public ExecutionMode executionMode(@Value("${execution.mode:platform}") String mode) {
+        return ExecutionMode.fromProperty(mode);
+    }
+
+    /**
+     * In virtual mode Tomcat hands every request to a new virtual thread instead
+     * of its {@code server.tomcat.threads.max} pool, so the number of requests in
+     * flight is bounded by {@code server.tomcat.max-connections} alone.
+     */
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> requestExecutorCustomizer(ExecutionMode mode) {
+        return factory -> {
+            if (mode == ExecutionMode.VIRTUAL) {
+                factory.addConnectorCustomizers(connector -> connector.getProtocolHandler().setExecutor(
+                        Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-request-", 0).factory())));
+            }
+        };
+    }
+}
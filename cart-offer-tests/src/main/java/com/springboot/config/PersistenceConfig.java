@@ -0,0 +1,28 @@
+package com.springboot.config;
+
+import com.springboot.offer.OfferJournal;
+import com.springboot.persistence.FileOfferJournal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+@Configuration
+public class PersistenceConfig {
+
+    /**
+     * File-backed journal under {@code offer.persistence.dir}, or no persistence
+     * when the property is empty.
+     */
+    @Bean(destroyMethod = "close")
+    public OfferJournal offerJournal(@Value("${offer.persistence.dir:}") String directory,
+                                     @Value("${offer.persistence.compaction-bytes:67108864}") long compactionBytes)
+            throws IOException {
+        if (directory.isEmpty()) {
+            return OfferJournal.NONE;
+        }
+        return new FileOfferJournal(Paths.get(directory), compactionBytes);
+    }
+}
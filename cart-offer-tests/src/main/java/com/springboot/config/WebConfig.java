@@ -0,0 +1,124 @@
+package com.springboot.config;
+
+import com.springboot.metrics.ApplyOfferMetrics;
+import com.springboot.ratelimit.RateLimitFilter;
+import com.springboot.ratelimit.TokenBucketLimiter;
+import com.springboot.security.Endpoint;
+import com.springboot.security.PermissionMatrix;
+import com.springboot.security.Role;
+import com.springboot.security.RoleAuthorizationFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.EnumSet;
+
+@Configuration
+public class WebConfig {
+
+    private static final int AUTHORIZATION_ORDER = 1;
+    private static final int RATE_LIMIT_ORDER = 2;
+
+    private final PermissionMatrix permissions;
+    private final Role defaultRole;
+
+    /**
+     * @param defaultRole role for requests without a {@code user_role} header;
+     *                    empty rejects them with 401
+     */
+    public WebConfig(Environment environment, @Value("${rbac.default-role:guest}") String defaultRole) {
+        this.permissions = permissions(environment);
+        this.defaultRole = defaultRole.isEmpty() ? null : Role.fromHeader(defaultRole);
+        if (this.defaultRole == null && !defaultRole.isEmpty()) {
+            throw new IllegalArgumentException("Unknown rbac.default-role " + defaultRole);
+        }
+    }
+
+    /**
+     * Default permission matrix, with any role overridden by a
+     * {@code rbac.permissions.<role>} list of {@link Endpoint} names.
+     */
+    private static PermissionMatrix permissions(Environment environment) {
+        PermissionMatrix defaults = PermissionMatrix.defaults();
+        PermissionMatrix.Builder builder = new PermissionMatrix.Builder();
+        for (Role role : Role.values()) {
+            EnumSet<Endpoint> endpoints = EnumSet.noneOf(Endpoint.class);
+            String configured = environment.getProperty("rbac.permissions." + role.getHeaderValue());
+            if (configured != null) {
+                for (String name : configured.split(",")) {
+                    if (!name.trim().isEmpty()) {
+                        endpoints.add(Endpoint.valueOf(name.trim()));
+                    }
+                }
+            } else {
+                for (Endpoint endpoint : Endpoint.values()) {
+                    if (defaults.isAllowed(role, endpoint)) {
+                        endpoints.add(endpoint);
+                    }
+                }
+            }
+            builder.grant(role, endpoints);
+        }
+        return builder.build();
+    }
+
+    @Bean
+    public FilterRegistrationBean<RoleAuthorizationFilter> addOfferAuthorizationFilter() {
+        return authorization(Endpoint.ADD_OFFER);
+    }
+
+    @Bean
+    public FilterRegistrationBean<RoleAuthorizationFilter> readOffersAuthorizationFilter() {
+        return authorization(Endpoint.READ_OFFERS);
+    }
+
+    @Bean
+    public FilterRegistrationBean<RoleAuthorizationFilter> applyOfferAuthorizationFilter() {
+        return authorization(Endpoint.APPLY_OFFER);
+    }
+
+    @Bean
+    public FilterRegistrationBean<RoleAuthorizationFilter> applyOfferBatchAuthorizationFilter() {
+        return authorization(Endpoint.APPLY_OFFER_BATCH);
+    }
+
+    @Bean
+    public FilterRegistrationBean<RoleAuthorizationFilter> replicationChangesAuthorizationFilter() {
+        return authorization(Endpoint.REPLICATION_CHANGES);
+    }
+
+    @Bean
+    public FilterRegistrationBean<RoleAuthorizationFilter> readMetricsAuthorizationFilter() {
+        return authorization(Endpoint.READ_METRICS);
+    }
+
+    private FilterRegistrationBean<RoleAuthorizationFilter> authorization(Endpoint endpoint) {
+        FilterRegistrationBean<RoleAuthorizationFilter> registration =
+                new FilterRegistrationBean<>(new RoleAuthorizationFilter(permissions, endpoint, defaultRole));
+        // Registrations are keyed by name, which otherwise defaults to the filter class for every endpoint.
+        registration.setName("roleAuthorizationFilter-" + endpoint.name());
+        registration.addUrlPatterns(endpoint.getUrlPattern());
+        registration.setOrder(AUTHORIZATION_ORDER);
+        return registration;
+    }
+
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(
+            @Value("${rate-limit.slots:262144}") int slots,
+            @Value("${rate-limit.user.capacity:10}") int userCapacity,
+            @Value("${rate-limit.user.refill-per-second:10}") int userRefill,
+            @Value("${rate-limit.role.capacity:5000}") int roleCapacity,
+            @Value("${rate-limit.role.refill-per-second:5000}") int roleRefill,
+            ApplyOfferMetrics metrics) {
+        RateLimitFilter filter = new RateLimitFilter(
+                new TokenBucketLimiter(slots, userCapacity, userRefill),
+                new TokenBucketLimiter(64, roleCapacity, roleRefill),
+                metrics);
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns(Endpoint.APPLY_OFFER.getUrlPattern(), Endpoint.APPLY_OFFER_BATCH.getUrlPattern());
+        registration.setOrder(RATE_LIMIT_ORDER);
+        return registration;
+    }
+}
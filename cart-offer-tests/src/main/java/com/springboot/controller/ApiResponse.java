@@ -0,0 +1,22 @@
+package com.springboot.controller;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class ApiResponse {
+    @JsonProperty("response_msg")
+    private String responseMsg;
+
+    public ApiResponse() {}
+
+    public ApiResponse(String responseMsg) {
+        this.responseMsg = responseMsg;
+    }
+
+    public String getResponseMsg() {
+        return responseMsg;
+    }
+
+    public void setResponseMsg(String responseMsg) {
+        this.responseMsg = responseMsg;
+    }
+}
@@ -0,0 +1,57 @@
+package com.springboot.controller;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class ApplyOfferRequest {
+    @JsonProperty("cart_value")
+    private long cartValue;
+    @JsonProperty("user_id")
+    private int userId;
+    @JsonProperty("restaurant_id")
+    private int restaurantId;
+    // Test hook: behave as if the segment service returned no segment.
+    @JsonProperty("simulate_segment_null")
+    private boolean simulateSegmentNull;
+
+    public ApplyOfferRequest() {}
+
+    public ApplyOfferRequest(long cartValue, int userId, int restaurantId) {
+        this.cartValue = cartValue;
+        this.userId = userId;
+        this.restaurantId = restaurantId;
+    }
+
+    // Getters and setters
+
+    public long getCartValue() {
+        return cartValue;
+    }
+
+    public void setCartValue(long cartValue) {
+        this.cartValue = cartValue;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public int getRestaurantId() {
+        return restaurantId;
+    }
+
+    public void setRestaurantId(int restaurantId) {
+        this.restaurantId = restaurantId;
+    }
+
+    public boolean isSimulateSegmentNull() {
+        return simulateSegmentNull;
+    }
+
+    public void setSimulateSegmentNull(boolean simulateSegmentNull) {
+        this.simulateSegmentNull = simulateSegmentNull;
+    }
+}
@@ -0,0 +1,22 @@
+package com.springboot.controller;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class ApplyOfferResponse {
+    @JsonProperty("cart_value")
+    private long cartValue;
+
+    public ApplyOfferResponse() {}
+
+    public ApplyOfferResponse(long cartValue) {
+        this.cartValue = cartValue;
+    }
+
+    public long getCartValue() {
+        return cartValue;
+    }
+
+    public void setCartValue(long cartValue) {
+        this.cartValue = cartValue;
+    }
+}
@@ -0,0 +1,195 @@
+package com.springboot.controller;
+
+import com.springboot.json.BoundedPool;
+import com.springboot.json.JsonReader;
+import com.springboot.json.JsonSyntaxException;
+import com.springboot.json.JsonWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming codec for the cart and offer payloads, used instead of Jackson
+ * data-binding on the request path. Unknown fields are ignored and scalar
+ * coercions follow Jackson's defaults, so bodies accepted by the DTOs'
+ * Jackson mapping decode to the same values.
+ *
+ * <p>Readers and writers are borrowed from small pools, sized to the CPUs
+ * since encoding and decoding never block, so they are reused on platform and
+ * virtual threads alike.
+ */
+public final class CartOfferCodec {
+
+    private static final byte[][] APPLY_OFFER_FIELDS =
+            JsonReader.names("cart_value", "user_id", "restaurant_id", "simulate_segment_null");
+    private static final byte[][] OFFER_FIELDS =
+            JsonReader.names("restaurantId", "offerType", "discount", "segments", "startTime", "endTime");
+
+    private static final byte[] CART_VALUE = JsonWriter.encodeName("cart_value");
+    private static final byte[] RESPONSE_MSG = JsonWriter.encodeName("response_msg");
+
+    private static final int POOL_SIZE = 2 * Runtime.getRuntime().availableProcessors();
+    private static final BoundedPool<JsonReader> READERS = new BoundedPool<>(POOL_SIZE, JsonReader::new);
+    private static final BoundedPool<JsonWriter> WRITERS = new BoundedPool<>(POOL_SIZE, JsonWriter::new);
+
+    private CartOfferCodec() {
+    }
+
+    /**
+     * Decodes an apply_offer body: {@code {cart_value, user_id, restaurant_id}}.
+     */
+    public static ApplyOfferRequest readApplyOffer(byte[] body) throws JsonSyntaxException {
+        JsonReader reader = READERS.acquire();
+        try {
+            return readApplyOffer(reader.reset(body));
+        } finally {
+            READERS.release(reader);
+        }
+    }
+
+    /**
+     * Decodes a JSON array of apply_offer bodies.
+     */
+    public static List<ApplyOfferRequest> readApplyOfferBatch(byte[] body) throws JsonSyntaxException {
+        JsonReader reader = READERS.acquire();
+        try {
+            reader.reset(body);
+            if (!reader.beginArrayOrNull()) {
+                throw new JsonSyntaxException("Expected array", 0);
+            }
+            List<ApplyOfferRequest> requests = new ArrayList<>();
+            while (reader.hasNext()) {
+                requests.add(readApplyOffer(reader));
+            }
+            return requests;
+        } finally {
+            READERS.release(reader);
+        }
+    }
+
+    /**
+     * Decodes an {@link OfferRequest} body.
+     */
+    public static OfferRequest readOffer(byte[] body) throws JsonSyntaxException {
+        JsonReader reader = READERS.acquire();
+        try {
+            return readOffer(reader.reset(body));
+        } finally {
+            READERS.release(reader);
+        }
+    }
+
+    private static OfferRequest readOffer(JsonReader reader) throws JsonSyntaxException {
+        OfferRequest offer = new OfferRequest();
+        reader.beginObject();
+        for (int field; (field = reader.nextField(OFFER_FIELDS)) != JsonReader.END; ) {
+            switch (field) {
+                case 0:
+                    offer.setRestaurantId(reader.readInt());
+                    break;
+                case 1:
+                    offer.setOfferType(reader.readString());
+                    break;
+                case 2:
+                    offer.setDiscount(reader.readInt());
+                    break;
+                case 3:
+                    offer.setSegments(readStrings(reader));
+                    break;
+                case 4:
+                    offer.setStartTime(readTime(reader));
+                    break;
+                case 5:
+                    offer.setEndTime(readTime(reader));
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        return offer;
+    }
+
+    public static byte[] writeApplyOffer(long cartValue) {
+        JsonWriter writer = WRITERS.acquire();
+        try {
+            writeCart(writer.reset(), cartValue);
+            return writer.toByteArray();
+        } finally {
+            WRITERS.release(writer);
+        }
+    }
+
+    /**
+     * Encodes batch results as a JSON array of {@code {cart_value}} objects.
+     */
+    public static byte[] writeApplyOfferBatch(long[] cartValues) {
+        JsonWriter writer = WRITERS.acquire();
+        try {
+            writer.reset().beginArray();
+            for (long cartValue : cartValues) {
+                writeCart(writer, cartValue);
+            }
+            return writer.endArray().toByteArray();
+        } finally {
+            WRITERS.release(writer);
+        }
+    }
+
+    public static byte[] writeApiResponse(String message) {
+        JsonWriter writer = WRITERS.acquire();
+        try {
+            return writer.reset()
+                    .beginObject().name(RESPONSE_MSG).value(message).endObject()
+                    .toByteArray();
+        } finally {
+            WRITERS.release(writer);
+        }
+    }
+
+    private static ApplyOfferRequest readApplyOffer(JsonReader reader) throws JsonSyntaxException {
+        ApplyOfferRequest request = new ApplyOfferRequest();
+        reader.beginObject();
+        for (int field; (field = reader.nextField(APPLY_OFFER_FIELDS)) != JsonReader.END; ) {
+            switch (field) {
+                case 0:
+                    request.setCartValue(reader.readLong());
+                    break;
+                case 1:
+                    request.setUserId(reader.readInt());
+                    break;
+                case 2:
+                    request.setRestaurantId(reader.readInt());
+                    break;
+                case 3:
+                    request.setSimulateSegmentNull(reader.readBoolean());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        return request;
+    }
+
+    private static List<String> readStrings(JsonReader reader) throws JsonSyntaxException {
+        if (!reader.beginArrayOrNull()) {
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        while (reader.hasNext()) {
+            values.add(reader.readString());
+        }
+        return values;
+    }
+
+    /**
+     * Reads an epoch-millisecond time; only {@code null} means no time, as
+     * with Jackson.
+     */
+    private static Long readTime(JsonReader reader) throws JsonSyntaxException {
+        return reader.readNullableLong();
+    }
+
+    private static void writeCart(JsonWriter writer, long cartValue) {
+        writer.beginObject().name(CART_VALUE).value(cartValue).endObject();
+    }
+}
@@ -0,0 +1,186 @@
+package com.springboot.controller;
+
+import com.springboot.capture.TrafficRecorder;
+import com.springboot.metrics.ApplyOfferMetrics;
+import com.springboot.metrics.ApplyOfferMetrics.Outcome;
+import com.springboot.metrics.ApplyOfferMetrics.Stage;
+import com.springboot.offer.OfferEntry;
+import com.springboot.offer.OfferStore;
+import com.springboot.offer.OfferType;
+import com.springboot.offer.SegmentRegistry;
+import com.springboot.segment.UserSegmentClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.springboot.json.JsonSyntaxException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+public class CartOfferController {
+
+    private final OfferStore offerStore;
+    private final UserSegmentClient segmentClient;
+    private final int maxBatchSize;
+    private final ApplyOfferMetrics metrics;
+    private final TrafficRecorder recorder;
+
+    public CartOfferController(OfferStore offerStore, UserSegmentClient segmentClient,
+                               @Value("${cart.batch.max-size:1000}") int maxBatchSize,
+                               ApplyOfferMetrics metrics, TrafficRecorder recorder) {
+        this.offerStore = offerStore;
+        this.segmentClient = segmentClient;
+        this.maxBatchSize = maxBatchSize;
+        this.metrics = metrics;
+        this.recorder = recorder;
+    }
+
+    /**
+     * Applies the best offer for the user's segment. The segment is resolved
+     * without blocking the servlet thread; the offer lookup runs when it
+     * arrives. Without a segment, or if the segment service is unavailable,
+     * the cart value is returned unchanged.
+     *
+     * <p>The body is decoded and the response encoded with
+     * {@link CartOfferCodec} rather than by the message converters, which also
+     * lets each stage be timed. Sampled requests are recorded, with the
+     * segment they resolved, after the response is encoded; a request whose
+     * segment was unavailable is not recorded, as it could not be replayed.
+     */
+    @PostMapping(value = "/api/v1/cart/apply_offer", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<byte[]>> applyOffer(@RequestBody byte[] body) {
+        long start = System.nanoTime();
+        boolean sampled = recorder.sample();
+        ApplyOfferRequest request;
+        try {
+            request = CartOfferCodec.readApplyOffer(body);
+        } catch (JsonSyntaxException e) {
+            if (sampled) {
+                recorder.recordApplyOffer(start, body, 0, false, null, HttpStatus.BAD_REQUEST.value(), new byte[0]);
+            }
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        long parsed = System.nanoTime();
+        metrics.recordStage(Stage.PARSE, parsed - start);
+        CompletableFuture<String> segment = request.isSimulateSegmentNull()
+                ? CompletableFuture.completedFuture(null)
+                : segmentClient.getSegmentAsync(request.getUserId());
+        return segment.handle((resolved, error) -> {
+            long resolvedAt = System.nanoTime();
+            metrics.recordStage(Stage.SEGMENT, resolvedAt - parsed);
+            long cartValue;
+            if (error != null) {
+                metrics.recordOutcome(Outcome.SEGMENT_UNAVAILABLE);
+                cartValue = request.getCartValue();
+            } else {
+                cartValue = apply(request, resolved);
+            }
+            long appliedAt = System.nanoTime();
+            metrics.recordStage(Stage.LOOKUP, appliedAt - resolvedAt);
+            byte[] response = CartOfferCodec.writeApplyOffer(cartValue);
+            long end = System.nanoTime();
+            metrics.recordStage(Stage.SERIALIZE, end - appliedAt);
+            metrics.recordStage(Stage.TOTAL, end - start);
+            if (sampled && error == null) {
+                recorder.recordApplyOffer(start, body, request.getUserId(), !request.isSimulateSegmentNull(), resolved,
+                        HttpStatus.OK.value(), response);
+            }
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(response);
+        });
+    }
+
+    private long apply(ApplyOfferRequest request, String segment) {
+        int segmentId = offerStore.getSegments().idOf(segment);
+        // A segment no offer was ever registered for cannot match either.
+        OfferEntry entry = segment == null || segmentId == SegmentRegistry.UNKNOWN
+                ? null
+                : offerStore.find(request.getRestaurantId(), segmentId);
+        return apply(request, segment, entry);
+    }
+
+    private long apply(ApplyOfferRequest request, String segment, OfferEntry entry) {
+        if (entry == null) {
+            metrics.recordOutcome(segment == null ? Outcome.NO_SEGMENT : noMatch(request.getRestaurantId()));
+            return request.getCartValue();
+        }
+        OfferType type = entry.bestType(request.getCartValue());
+        if (type != null) {
+            metrics.recordApplied(type);
+        }
+        return entry.apply(request.getCartValue());
+    }
+
+    private Outcome noMatch(int restaurantId) {
+        return offerStore.hasOffers(restaurantId) ? Outcome.SEGMENT_MISMATCH : Outcome.NO_OFFER;
+    }
+
+    /**
+     * Prices several carts in one request. Results are returned in request order;
+     * each distinct user's segment and each distinct (restaurant, segment) offer
+     * is resolved only once per batch, and all segment lookups run concurrently.
+     * A user whose segment is unavailable is priced without one. Each cart
+     * counts towards the apply_offer outcomes, and the whole batch is timed as
+     * the {@link Stage#BATCH} stage.
+     */
+    @PostMapping(value = "/api/v1/cart/apply_offer/batch", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<byte[]>> applyOfferBatch(@RequestBody byte[] body) {
+        long start = System.nanoTime();
+        List<ApplyOfferRequest> requests;
+        try {
+            requests = CartOfferCodec.readApplyOfferBatch(body);
+        } catch (JsonSyntaxException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        if (requests.size() > maxBatchSize) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        Map<Integer, CompletableFuture<String>> segments = new HashMap<>();
+        for (ApplyOfferRequest request : requests) {
+            if (!request.isSimulateSegmentNull()) {
+                segments.computeIfAbsent(request.getUserId(), segmentClient::getSegmentAsync);
+            }
+        }
+        // Completes once every lookup has, whether or not some failed.
+        return CompletableFuture.allOf(segments.values().toArray(new CompletableFuture<?>[0]))
+                .handle((done, error) -> {
+                    byte[] response = CartOfferCodec.writeApplyOfferBatch(price(requests, segments));
+                    metrics.recordStage(Stage.BATCH, System.nanoTime() - start);
+                    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(response);
+                });
+    }
+
+    private long[] price(List<ApplyOfferRequest> requests, Map<Integer, CompletableFuture<String>> segments) {
+        Map<Long, OfferEntry> entries = new HashMap<>();
+        long[] cartValues = new long[requests.size()];
+        for (int i = 0; i < cartValues.length; i++) {
+            ApplyOfferRequest request = requests.get(i);
+            CompletableFuture<String> lookup = segments.get(request.getUserId());
+            if (!request.isSimulateSegmentNull() && lookup.isCompletedExceptionally()) {
+                metrics.recordOutcome(Outcome.SEGMENT_UNAVAILABLE);
+                cartValues[i] = request.getCartValue();
+                continue;
+            }
+            String segment = request.isSimulateSegmentNull() ? null : lookup.join();
+            int segmentId = offerStore.getSegments().idOf(segment);
+            OfferEntry entry = null;
+            if (segment != null && segmentId != SegmentRegistry.UNKNOWN) {
+                long key = ((long) request.getRestaurantId() << 32) | (segmentId & 0xFFFFFFFFL);
+                entry = entries.get(key);
+                if (entry == null && !entries.containsKey(key)) {
+                    entry = offerStore.find(request.getRestaurantId(), segmentId);
+                    entries.put(key, entry);
+                }
+            }
+            cartValues[i] = apply(request, segment, entry);
+        }
+        return cartValues;
+    }
+}
@@ -0,0 +1,136 @@
+package com.springboot.controller;
+
+import com.springboot.capture.TrafficRecorder;
+import com.springboot.metrics.ApplyOfferMetrics;
+import com.springboot.offer.IngestionStats;
+import com.springboot.offer.OfferStore;
+import com.springboot.replication.ReplicationClient;
+import com.springboot.replication.ReplicationLog;
+import com.springboot.segment.CircuitBreaker;
+import com.springboot.segment.SegmentCache;
+import com.springboot.segment.UserSegmentClient;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Operational counters and latencies, served to admins only as the
+ * {@code READ_METRICS} endpoint.
+ */
+@RestController
+public class MetricsController {
+
+    private final OfferStore offerStore;
+    private final UserSegmentClient segmentClient;
+    private final ApplyOfferMetrics applyOfferMetrics;
+    private final ReplicationLog replicationLog;
+    private final ReplicationClient replicationClient;
+    private final TrafficRecorder recorder;
+
+    public MetricsController(OfferStore offerStore, UserSegmentClient segmentClient,
+                             ApplyOfferMetrics applyOfferMetrics, ReplicationLog replicationLog,
+                             ReplicationClient replicationClient, TrafficRecorder recorder) {
+        this.offerStore = offerStore;
+        this.segmentClient = segmentClient;
+        this.applyOfferMetrics = applyOfferMetrics;
+        this.replicationLog = replicationLog;
+        this.replicationClient = replicationClient;
+        this.recorder = recorder;
+    }
+
+    @GetMapping("/internal/metrics")
+    public Map<String, Object> all() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("apply_offer", applyOfferMetrics.summary());
+        metrics.put("segment_cache", segmentCache());
+        metrics.put("segment_client", segmentClient());
+        metrics.put("ingestion", ingestion());
+        metrics.put("replication", replication());
+        metrics.put("capture", capture());
+        return metrics;
+    }
+
+    /**
+     * Requests written to the traffic capture, if one is being recorded.
+     */
+    @GetMapping("/internal/metrics/capture")
+    public Map<String, Object> capture() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", recorder.isEnabled());
+        metrics.put("recorded", recorder.getRecorded());
+        metrics.put("dropped", recorder.getDropped());
+        return metrics;
+    }
+
+    /**
+     * This node's change stream position and, per peer, the applied version
+     * and replication lag.
+     */
+    @GetMapping("/internal/metrics/replication")
+    public Map<String, Object> replication() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("epoch", replicationLog.getEpoch());
+        metrics.put("version", replicationLog.getLastVersion());
+        metrics.put("peers", replicationClient.summary());
+        return metrics;
+    }
+
+    @GetMapping("/internal/metrics/apply_offer")
+    public Map<String, Object> applyOffer() {
+        return applyOfferMetrics.summary();
+    }
+
+    @GetMapping("/internal/metrics/segment_cache")
+    public Map<String, Object> segmentCache() {
+        SegmentCache cache = segmentClient.getCache();
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("hits", hits);
+        metrics.put("misses", misses);
+        metrics.put("hit_ratio", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        metrics.put("size", cache.size());
+        return metrics;
+    }
+
+    /**
+     * Circuit breaker state and hedging for calls to the user segment service.
+     */
+    @GetMapping("/internal/metrics/segment_client")
+    public Map<String, Object> segmentClient() {
+        CircuitBreaker breaker = segmentClient.getBreaker();
+        long calls = segmentClient.getCalls();
+        long hedges = segmentClient.getHedges();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("breaker_state", breaker.getState().name().toLowerCase());
+        metrics.put("breaker_trips", breaker.getTrips());
+        metrics.put("short_circuited", breaker.getShortCircuited());
+        metrics.put("calls", calls);
+        metrics.put("failures", segmentClient.getFailures());
+        metrics.put("hedges", hedges);
+        metrics.put("hedge_rate", calls == 0 ? 0.0 : (double) hedges / calls);
+        metrics.put("hedge_wins", segmentClient.getHedgeWins());
+        metrics.put("hedge_delay_nanos", segmentClient.getHedgeDelayNanos());
+        return metrics;
+    }
+
+    @GetMapping("/internal/metrics/ingestion")
+    public Map<String, Object> ingestion() {
+        IngestionStats stats = offerStore.getIngestionStats();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("submitted", stats.getSubmitted());
+        metrics.put("applied", stats.getApplied());
+        metrics.put("batches", stats.getBatches());
+        metrics.put("queue_depth", offerStore.getQueueDepth());
+        metrics.put("shards", offerStore.getShardCount());
+        metrics.put("last_batch_size", stats.getLastBatchSize());
+        metrics.put("last_batch_nanos", stats.getLastBatchNanos());
+        metrics.put("last_staleness_nanos", stats.getLastStalenessNanos());
+        metrics.put("max_staleness_nanos", stats.getMaxStalenessNanos());
+        metrics.put("offer_entries", offerStore.size());
+        metrics.put("scheduled_offers", offerStore.getScheduledCount());
+        return metrics;
+    }
+}
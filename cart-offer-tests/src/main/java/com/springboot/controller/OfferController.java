@@ -0,0 +1,95 @@
+package com.springboot.controller;
+
+import com.springboot.capture.TrafficRecorder;
+import com.springboot.json.JsonSyntaxException;
+import com.springboot.offer.OfferStore;
+import com.springboot.segment.UserSegmentClient;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+public class OfferController {
+
+    private static final byte[] SUCCESS = CartOfferCodec.writeApiResponse("success");
+    private static final byte[] INVALID_OFFER = CartOfferCodec.writeApiResponse("invalid offer");
+    private static final byte[] UNAVAILABLE = CartOfferCodec.writeApiResponse("offer store unavailable");
+    private static final byte[] SEGMENT_UNAVAILABLE = CartOfferCodec.writeApiResponse("user segment unavailable");
+
+    private final OfferStore offerStore;
+    private final UserSegmentClient segmentClient;
+    private final TrafficRecorder recorder;
+
+    public OfferController(OfferStore offerStore, UserSegmentClient segmentClient, TrafficRecorder recorder) {
+        this.offerStore = offerStore;
+        this.segmentClient = segmentClient;
+        this.recorder = recorder;
+    }
+
+    /**
+     * Registers an offer. The response is sent once the offer is visible to
+     * apply_offer; the servlet thread is released while the ingestion queue
+     * catches up. Sampled requests are recorded with their response.
+     */
+    @PostMapping(value = "/api/v1/offer", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<byte[]>> addOffer(@RequestBody byte[] body) {
+        long start = System.nanoTime();
+        boolean sampled = recorder.sample();
+        OfferRequest offerRequest;
+        try {
+            offerRequest = CartOfferCodec.readOffer(body);
+        } catch (JsonSyntaxException e) {
+            return CompletableFuture.completedFuture(
+                    record(sampled, start, body, json(HttpStatus.BAD_REQUEST, INVALID_OFFER)));
+        }
+        return offerStore.submit(offerRequest).handle((added, error) -> {
+            ResponseEntity<byte[]> response;
+            if (error != null) {
+                response = json(HttpStatus.SERVICE_UNAVAILABLE, UNAVAILABLE);
+            } else {
+                response = added ? json(HttpStatus.OK, SUCCESS) : json(HttpStatus.BAD_REQUEST, INVALID_OFFER);
+            }
+            return record(sampled, start, body, response);
+        });
+    }
+
+    private static ResponseEntity<byte[]> json(HttpStatus status, byte[] body) {
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    private ResponseEntity<byte[]> record(boolean sampled, long start, byte[] body, ResponseEntity<byte[]> response) {
+        if (sampled) {
+            recorder.recordAddOffer(start, body, response.getStatusCodeValue(), response.getBody());
+        }
+        return response;
+    }
+
+    /**
+     * Returns the offers applicable to a user, i.e. those of the user's segment.
+     * Callers may only read their own offers, identified by the user_id header.
+     * As for apply_offer, the servlet thread is not held while the segment is
+     * resolved; 503 if the segment service is unavailable.
+     */
+    @GetMapping(value = "/api/v1/offer/{userId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<byte[]>> getOffers(
+            @PathVariable("userId") int userId,
+            @RequestHeader(value = "user_id", required = false) Integer callerId) {
+        if (callerId == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+        }
+        if (callerId != userId) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+        }
+        return segmentClient.getSegmentAsync(userId).handle((segment, error) -> error != null
+                ? json(HttpStatus.SERVICE_UNAVAILABLE, SEGMENT_UNAVAILABLE)
+                : json(HttpStatus.OK, offerStore.offersJson(segment)));
+    }
+}
@@ -1,10 +1,17 @@
 package com.springboot.controller;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 public class OfferRequest {
     private int restaurantId;
     private String offerType;
     private int discount;
     private java.util.List<String> segments;
+    // Optional validity window in epoch milliseconds: from startTime (inclusive) to endTime (exclusive).
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long startTime;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long endTime;
 
     public OfferRequest() {}
 
@@ -48,4 +55,20 @@ public class OfferRequest {
     public void setSegments(java.util.List<String> segments) {
         this.segments = segments;
     }
+
+    public Long getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(Long startTime) {
+        this.startTime = startTime;
+    }
+
+    public Long getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(Long endTime) {
+        this.endTime = endTime;
+    }
 }
@@ -0,0 +1,39 @@
+package com.springboot.controller;
+
+import com.springboot.replication.ReplicationCodec;
+import com.springboot.replication.ReplicationSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+public class ReplicationController {
+
+    private final ReplicationSource source;
+    private final int maxBatchSize;
+
+    public ReplicationController(ReplicationSource source,
+                                 @Value("${replication.batch-size:1000}") int maxBatchSize) {
+        this.source = source;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Offer deltas registered on this node after {@code since}, for peers that
+     * last saw {@code epoch}; a snapshot page when the cursor can no longer be
+     * served, or when {@code cursor} continues one.
+     */
+    @GetMapping(value = "/internal/replication/changes", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> changes(@RequestParam(value = "epoch", defaultValue = "0") long epoch,
+                                          @RequestParam(value = "since", defaultValue = "0") long since,
+                                          @RequestParam(value = "cursor", defaultValue = "0") long cursor,
+                                          @RequestParam(value = "limit", defaultValue = "1000") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, maxBatchSize));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(ReplicationCodec.write(source.changes(epoch, since, cursor, pageSize)));
+    }
+}
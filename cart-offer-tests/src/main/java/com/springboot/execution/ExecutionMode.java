@@ -0,0 +1,26 @@
+package com.springboot.execution;
+
+/**
+ * How blocking work (request processing, segment fetches) is scheduled,
+ * selected with {@code execution.mode}.
+ */
+public enum ExecutionMode {
+
+    /** Bounded pools of platform threads; the default. */
+    PLATFORM,
+
+    /** One virtual thread per request and per segment fetch. */
+    VIRTUAL;
+
+    /**
+     * Parses {@code platform} or {@code virtual}, case-insensitively.
+     */
+    public static ExecutionMode fromProperty(String value) {
+        for (ExecutionMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(value.trim())) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown execution.mode " + value + ", expected platform or virtual");
+    }
+}
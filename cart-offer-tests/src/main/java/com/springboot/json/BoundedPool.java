@@ -0,0 +1,56 @@
+package com.springboot.json;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Lock-free pool of up to {@code capacity} reusable objects, for per-call
+ * scratch state such as {@link JsonReader}s and {@link JsonWriter}s. Unlike a
+ * ThreadLocal it also pays off on virtual threads, which are started per
+ * request and would otherwise create a fresh instance every time.
+ *
+ * <p>{@link #acquire()} never blocks: it creates an object when no pooled one
+ * is free, and {@link #release(Object)} drops the object when the pool is
+ * full. Probing starts at a slot picked by the calling thread, so concurrent
+ * callers rarely contend on the same slot.
+ */
+public final class BoundedPool<T> {
+
+    private final AtomicReferenceArray<T> slots;
+    private final Supplier<T> factory;
+
+    public BoundedPool(int capacity, Supplier<T> factory) {
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.factory = factory;
+    }
+
+    public T acquire() {
+        int length = slots.length();
+        int start = start(length);
+        for (int i = 0; i < length; i++) {
+            int slot = (start + i) % length;
+            if (slots.get(slot) != null) {
+                T pooled = slots.getAndSet(slot, null);
+                if (pooled != null) {
+                    return pooled;
+                }
+            }
+        }
+        return factory.get();
+    }
+
+    public void release(T object) {
+        int length = slots.length();
+        int start = start(length);
+        for (int i = 0; i < length; i++) {
+            int slot = (start + i) % length;
+            if (slots.get(slot) == null && slots.compareAndSet(slot, null, object)) {
+                return;
+            }
+        }
+    }
+
+    private static int start(int length) {
+        return (int) ((Thread.currentThread().getId() & Integer.MAX_VALUE) % length);
+    }
+}
@@ -0,0 +1,594 @@
+package com.springboot.json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Pull reader over a UTF-8 JSON document held in a byte array, for fixed
+ * schemas.
+ *
+ * <p>Field names are matched against pre-encoded candidates instead of being
+ * decoded, and numbers are parsed straight into primitives, so reading a
+ * flat object allocates nothing beyond the strings it returns. Fields the
+ * caller does not know are skipped with {@link #skipValue()}. Scalar
+ * coercions follow Jackson's defaults: {@code null} reads as zero or false,
+ * fractional numbers are truncated and numeric strings are parsed.
+ */
+public final class JsonReader {
+
+    /** Returned by {@link #nextField(byte[][])} at the end of the object. */
+    public static final int END = -2;
+    /** Returned by {@link #nextField(byte[][])} for a field not among the candidates. */
+    public static final int UNKNOWN = -1;
+
+    private static final int MAX_DEPTH = 1000;
+    private static final byte[][] EMPTY_NAMES = new byte[0][];
+
+    private byte[] buf;
+    private int pos;
+    private int limit;
+    // started[d] is set once the container at depth d has had an element, i.e. the next one needs a comma.
+    private boolean[] started = new boolean[16];
+    private int depth;
+    private char[] chars = new char[64];
+
+    public JsonReader reset(byte[] buf) {
+        return reset(buf, 0, buf.length);
+    }
+
+    public JsonReader reset(byte[] buf, int offset, int length) {
+        this.buf = buf;
+        this.pos = offset;
+        this.limit = offset + length;
+        this.depth = 0;
+        return this;
+    }
+
+    /**
+     * Encodes field names for {@link #nextField(byte[][])}.
+     */
+    public static byte[][] names(String... names) {
+        byte[][] encoded = new byte[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            encoded[i] = names[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return encoded;
+    }
+
+    public void beginObject() throws JsonSyntaxException {
+        expect('{', "Expected object");
+        push();
+    }
+
+    /**
+     * Reads the next field name of the current object and positions the reader
+     * at its value. Returns the index of the matching candidate,
+     * {@link #UNKNOWN}, or {@link #END} once the object is closed.
+     */
+    public int nextField(byte[][] names) throws JsonSyntaxException {
+        if (!nextElement('}')) {
+            return END;
+        }
+        if (peek() != '"') {
+            throw error("Expected field name");
+        }
+        pos++;
+        int start = pos;
+        int end = start;
+        while (end < limit && buf[end] != '"' && buf[end] != '\\') {
+            end++;
+        }
+        int match = UNKNOWN;
+        if (end < limit && buf[end] == '"') {
+            pos = end + 1;
+            match = match(names, start, end - start);
+        } else {
+            pos = start - 1;
+            byte[] decoded = readString().getBytes(StandardCharsets.UTF_8);
+            match = match(names, decoded, 0, decoded.length);
+        }
+        if (peek() != ':') {
+            throw error("Expected ':'");
+        }
+        pos++;
+        return match;
+    }
+
+    /**
+     * Reads a {@code null} or the start of an array; returns false for null.
+     */
+    public boolean beginArrayOrNull() throws JsonSyntaxException {
+        if (readNull()) {
+            return false;
+        }
+        expect('[', "Expected array");
+        push();
+        return true;
+    }
+
+    /**
+     * Returns true if the current array has another element and positions the
+     * reader at it, or consumes the closing bracket and returns false.
+     */
+    public boolean hasNext() throws JsonSyntaxException {
+        return nextElement(']');
+    }
+
+    public long readLong() throws JsonSyntaxException {
+        int c = peek();
+        if (c == '-' || (c >= '0' && c <= '9')) {
+            return number(Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+        if (c == '"') {
+            return parseLong(readString().trim(), Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+        if (readNull()) {
+            return 0;
+        }
+        throw error("Expected number");
+    }
+
+    /**
+     * Reads a number like {@link #readLong()}, but returns {@code null} as null
+     * rather than 0.
+     */
+    public Long readNullableLong() throws JsonSyntaxException {
+        return readNull() ? null : readLong();
+    }
+
+    public int readInt() throws JsonSyntaxException {
+        int c = peek();
+        if (c == '-' || (c >= '0' && c <= '9')) {
+            return (int) number(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+        if (c == '"') {
+            return (int) parseLong(readString().trim(), Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+        if (readNull()) {
+            return 0;
+        }
+        throw error("Expected number");
+    }
+
+    public boolean readBoolean() throws JsonSyntaxException {
+        int c = peek();
+        if (c == 't' && literal("true")) {
+            return true;
+        }
+        if (c == 'f' && literal("false")) {
+            return false;
+        }
+        if (readNull()) {
+            return false;
+        }
+        if (c == '-' || (c >= '0' && c <= '9')) {
+            return number(Long.MIN_VALUE, Long.MAX_VALUE) != 0;
+        }
+        if (c == '"') {
+            String text = readString().trim();
+            if (text.equalsIgnoreCase("true")) {
+                return true;
+            }
+            if (text.isEmpty() || text.equalsIgnoreCase("false") || text.equals("null")) {
+                return false;
+            }
+        }
+        throw error("Expected boolean");
+    }
+
+    /**
+     * Reads a string; numbers and booleans are returned as their text, and
+     * {@code null} as null.
+     */
+    public String readString() throws JsonSyntaxException {
+        int c = peek();
+        if (c != '"') {
+            if (readNull()) {
+                return null;
+            }
+            int start = pos;
+            if (c == 't' && literal("true") || c == 'f' && literal("false")) {
+                return new String(buf, start, pos - start, StandardCharsets.US_ASCII);
+            }
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                scanNumber();
+                return new String(buf, start, pos - start, StandardCharsets.US_ASCII);
+            }
+            throw error("Expected string");
+        }
+        pos++;
+        int start = pos;
+        boolean ascii = true;
+        while (pos < limit) {
+            int b = buf[pos];
+            if (b == '"') {
+                String value = new String(buf, start, pos - start,
+                        ascii ? StandardCharsets.US_ASCII : StandardCharsets.UTF_8);
+                pos++;
+                return value;
+            }
+            if (b == '\\') {
+                return readEscaped(start);
+            }
+            if (b >= 0 && b < 0x20) {
+                throw error("Unescaped control character in string");
+            }
+            ascii &= b >= 0;
+            pos++;
+        }
+        throw error("Unterminated string");
+    }
+
+    /**
+     * Skips the current value, including nested objects and arrays.
+     */
+    public void skipValue() throws JsonSyntaxException {
+        int c = peek();
+        switch (c) {
+            case '{':
+                beginObject();
+                while (nextField(EMPTY_NAMES) != END) {
+                    skipValue();
+                }
+                return;
+            case '[':
+                pos++;
+                push();
+                while (hasNext()) {
+                    skipValue();
+                }
+                return;
+            case '"':
+                skipString();
+                return;
+            case 't':
+                if (literal("true")) {
+                    return;
+                }
+                break;
+            case 'f':
+                if (literal("false")) {
+                    return;
+                }
+                break;
+            case 'n':
+                if (literal("null")) {
+                    return;
+                }
+                break;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    scanNumber();
+                    return;
+                }
+        }
+        throw error("Unexpected character");
+    }
+
+    private void push() throws JsonSyntaxException {
+        if (++depth > MAX_DEPTH) {
+            throw error("Nesting too deep");
+        }
+        if (depth == started.length) {
+            started = Arrays.copyOf(started, depth * 2);
+        }
+        started[depth] = false;
+    }
+
+    /**
+     * Handles the separator before the next element of the current container.
+     * Returns false, leaving the container, if it is closed by {@code close}.
+     */
+    private boolean nextElement(char close) throws JsonSyntaxException {
+        int c = peek();
+        if (c == close) {
+            pos++;
+            depth--;
+            return false;
+        }
+        if (started[depth]) {
+            if (c != ',') {
+                throw error("Expected ',' or '" + close + "'");
+            }
+            pos++;
+            if (peek() == close) {
+                throw error("Trailing comma");
+            }
+        }
+        started[depth] = true;
+        return true;
+    }
+
+    private boolean readNull() throws JsonSyntaxException {
+        return peek() == 'n' && literal("null");
+    }
+
+    private boolean literal(String text) throws JsonSyntaxException {
+        int end = pos + text.length();
+        if (end > limit) {
+            throw error("Unexpected end of input");
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (buf[pos + i] != text.charAt(i)) {
+                throw error("Unrecognized token");
+            }
+        }
+        if (end < limit && isIdentifierPart(buf[end])) {
+            throw error("Unrecognized token");
+        }
+        pos = end;
+        return true;
+    }
+
+    private static boolean isIdentifierPart(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '_' || b < 0;
+    }
+
+    /**
+     * Parses a number token into a primitive within the range; fractions and
+     * exponents are truncated toward zero.
+     */
+    private long number(long min, long max) throws JsonSyntaxException {
+        int start = pos;
+        boolean negative = buf[pos] == '-';
+        int digits = negative ? pos + 1 : pos;
+        boolean integral = scanNumber();
+        if (!integral) {
+            double value = Double.parseDouble(new String(buf, start, pos - start, StandardCharsets.US_ASCII));
+            if (!(value >= min && value <= max)) {
+                throw error("Numeric value out of range");
+            }
+            return (long) value;
+        }
+        long value = 0;
+        for (int i = digits; i < pos; i++) {
+            int digit = buf[i] - '0';
+            // Accumulate negatively so Long.MIN_VALUE fits.
+            if (value < (Long.MIN_VALUE + digit) / 10) {
+                throw error("Numeric value out of range");
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative) {
+            if (value == Long.MIN_VALUE) {
+                throw error("Numeric value out of range");
+            }
+            value = -value;
+        }
+        if (value < min || value > max) {
+            throw error("Numeric value out of range");
+        }
+        return value;
+    }
+
+    /**
+     * Advances over a number token; returns true if it has neither a fraction
+     * nor an exponent.
+     */
+    private boolean scanNumber() throws JsonSyntaxException {
+        boolean integral = true;
+        if (buf[pos] == '-') {
+            pos++;
+        }
+        if (pos >= limit || !isDigit(buf[pos])) {
+            throw error("Invalid number");
+        }
+        if (buf[pos] == '0' && pos + 1 < limit && isDigit(buf[pos + 1])) {
+            throw error("Leading zeroes not allowed");
+        }
+        pos = digits(pos);
+        if (pos < limit && buf[pos] == '.') {
+            integral = false;
+            pos = requireDigits(pos + 1);
+        }
+        if (pos < limit && (buf[pos] == 'e' || buf[pos] == 'E')) {
+            integral = false;
+            pos++;
+            if (pos < limit && (buf[pos] == '+' || buf[pos] == '-')) {
+                pos++;
+            }
+            pos = requireDigits(pos);
+        }
+        if (pos < limit && isIdentifierPart(buf[pos])) {
+            throw error("Invalid number");
+        }
+        return integral;
+    }
+
+    private int requireDigits(int from) throws JsonSyntaxException {
+        int end = digits(from);
+        if (end == from) {
+            pos = from;
+            throw error("Invalid number");
+        }
+        return end;
+    }
+
+    private int digits(int from) {
+        int i = from;
+        while (i < limit && isDigit(buf[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private long parseLong(String text, long min, long max) throws JsonSyntaxException {
+        if (text.isEmpty() || text.equals("null")) {
+            return 0;
+        }
+        try {
+            long value = Long.parseLong(text);
+            if (value >= min && value <= max) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw error("Not a valid number: " + text);
+    }
+
+    private void skipString() throws JsonSyntaxException {
+        pos++;
+        while (pos < limit) {
+            int b = buf[pos++];
+            if (b == '"') {
+                return;
+            }
+            if (b == '\\') {
+                skipEscape();
+            } else if (b >= 0 && b < 0x20) {
+                throw error("Unescaped control character in string");
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private void skipEscape() throws JsonSyntaxException {
+        if (pos >= limit) {
+            throw error("Unterminated string");
+        }
+        switch (buf[pos++]) {
+            case '"': case '\\': case '/': case 'b': case 'f': case 'n': case 'r': case 't':
+                return;
+            case 'u':
+                hex4();
+                return;
+            default:
+                throw error("Invalid escape");
+        }
+    }
+
+    private String readEscaped(int start) throws JsonSyntaxException {
+        String prefix = new String(buf, start, pos - start, StandardCharsets.UTF_8);
+        char[] out = ensure(prefix.length() + 16);
+        prefix.getChars(0, prefix.length(), out, 0);
+        int length = prefix.length();
+        while (pos < limit) {
+            int b = buf[pos++] & 0xFF;
+            if (b == '"') {
+                return new String(chars, 0, length);
+            }
+            out = ensure(length + 2);
+            if (b == '\\') {
+                if (pos >= limit) {
+                    break;
+                }
+                int e = buf[pos++];
+                switch (e) {
+                    case '"': case '\\': case '/':
+                        out[length++] = (char) e;
+                        break;
+                    case 'b': out[length++] = '\b'; break;
+                    case 'f': out[length++] = '\f'; break;
+                    case 'n': out[length++] = '\n'; break;
+                    case 'r': out[length++] = '\r'; break;
+                    case 't': out[length++] = '\t'; break;
+                    case 'u':
+                        out[length++] = (char) hex4();
+                        break;
+                    default:
+                        throw error("Invalid escape");
+                }
+            } else if (b < 0x20) {
+                throw error("Unescaped control character in string");
+            } else if (b < 0x80) {
+                out[length++] = (char) b;
+            } else {
+                int codePoint = utf8(b);
+                length += Character.toChars(codePoint, out, length);
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private int hex4() throws JsonSyntaxException {
+        if (pos + 4 > limit) {
+            throw error("Invalid escape");
+        }
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(buf[pos++], 16);
+            if (digit < 0) {
+                throw error("Invalid escape");
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    private int utf8(int lead) throws JsonSyntaxException {
+        int extra = lead >= 0xF0 ? 3 : lead >= 0xE0 ? 2 : lead >= 0xC0 ? 1 : -1;
+        if (extra < 0 || pos + extra > limit) {
+            throw error("Invalid UTF-8");
+        }
+        int codePoint = lead & (0x3F >> extra);
+        for (int i = 0; i < extra; i++) {
+            int b = buf[pos++] & 0xFF;
+            if ((b & 0xC0) != 0x80) {
+                throw error("Invalid UTF-8");
+            }
+            codePoint = codePoint << 6 | (b & 0x3F);
+        }
+        if (codePoint > Character.MAX_CODE_POINT) {
+            throw error("Invalid UTF-8");
+        }
+        return codePoint;
+    }
+
+    private char[] ensure(int capacity) {
+        if (chars.length < capacity) {
+            chars = Arrays.copyOf(chars, Math.max(capacity, chars.length * 2));
+        }
+        return chars;
+    }
+
+    private int match(byte[][] names, int start, int length) {
+        return match(names, buf, start, length);
+    }
+
+    private static int match(byte[][] names, byte[] source, int start, int length) {
+        for (int i = 0; i < names.length; i++) {
+            byte[] name = names[i];
+            if (name.length != length) {
+                continue;
+            }
+            int j = 0;
+            while (j < length && name[j] == source[start + j]) {
+                j++;
+            }
+            if (j == length) {
+                return i;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    private void expect(char c, String message) throws JsonSyntaxException {
+        if (peek() != c) {
+            throw error(message);
+        }
+        pos++;
+    }
+
+    /**
+     * Skips whitespace and returns the next byte without consuming it.
+     */
+    private int peek() throws JsonSyntaxException {
+        while (pos < limit) {
+            byte b = buf[pos];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return b;
+            }
+            pos++;
+        }
+        throw error("Unexpected end of input");
+    }
+
+    private JsonSyntaxException error(String message) {
+        return new JsonSyntaxException(message, pos);
+    }
+}
@@ -0,0 +1,14 @@
+package com.springboot.json;
+
+import java.io.IOException;
+
+/**
+ * Thrown by {@link JsonReader} for malformed input or values that do not fit
+ * the requested type.
+ */
+public class JsonSyntaxException extends IOException {
+
+    public JsonSyntaxException(String message, int position) {
+        super(message + " at offset " + position);
+    }
+}
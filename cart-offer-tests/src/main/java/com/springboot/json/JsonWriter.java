@@ -0,0 +1,228 @@
+package com.springboot.json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streaming JSON writer into a growable byte buffer that is kept across
+ * {@link #reset()}s, so a thread-confined writer encodes responses without
+ * allocating until {@link #toByteArray()}.
+ *
+ * <p>Output matches Jackson's compact form: no whitespace, and only
+ * {@code "}, {@code \} and control characters are escaped.
+ */
+public final class JsonWriter {
+
+    private static final int MAX_DEPTH = 63;
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buf;
+    private int size;
+    // Bit d is set once the container at depth d has an element, i.e. the next one needs a comma.
+    private long started;
+    private int depth;
+    private boolean afterName;
+
+    public JsonWriter() {
+        this(64);
+    }
+
+    public JsonWriter(int initialCapacity) {
+        this.buf = new byte[initialCapacity];
+    }
+
+    public JsonWriter reset() {
+        size = 0;
+        started = 0;
+        depth = 0;
+        afterName = false;
+        return this;
+    }
+
+    /**
+     * Encodes a field name, including its quotes and colon, for
+     * {@link #name(byte[])}.
+     */
+    public static byte[] encodeName(String name) {
+        JsonWriter writer = new JsonWriter(name.length() + 3);
+        writer.string(name);
+        writer.write(':');
+        return writer.toByteArray();
+    }
+
+    public JsonWriter beginObject() {
+        return open('{');
+    }
+
+    public JsonWriter endObject() {
+        return close('}');
+    }
+
+    public JsonWriter beginArray() {
+        return open('[');
+    }
+
+    public JsonWriter endArray() {
+        return close(']');
+    }
+
+    /**
+     * Writes a field name encoded with {@link #encodeName(String)}.
+     */
+    public JsonWriter name(byte[] encodedName) {
+        separate();
+        write(encodedName, 0, encodedName.length);
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(long value) {
+        separate();
+        if (value == Long.MIN_VALUE) {
+            write(MIN_LONG, 0, MIN_LONG.length);
+            return this;
+        }
+        if (value < 0) {
+            write('-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        ensure(digits);
+        for (int i = size + digits - 1; i >= size; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        size += digits;
+        return this;
+    }
+
+    public JsonWriter value(boolean value) {
+        separate();
+        if (value) {
+            write('t'); write('r'); write('u'); write('e');
+        } else {
+            write('f'); write('a'); write('l'); write('s'); write('e');
+        }
+        return this;
+    }
+
+    public JsonWriter value(String value) {
+        separate();
+        if (value == null) {
+            write('n'); write('u'); write('l'); write('l');
+        } else {
+            string(value);
+        }
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, size);
+    }
+
+    private JsonWriter open(char bracket) {
+        separate();
+        if (++depth > MAX_DEPTH) {
+            throw new IllegalStateException("Nesting too deep");
+        }
+        started &= ~(1L << depth);
+        write(bracket);
+        return this;
+    }
+
+    private JsonWriter close(char bracket) {
+        if (depth == 0 || afterName) {
+            throw new IllegalStateException("Unbalanced " + bracket);
+        }
+        depth--;
+        write(bracket);
+        return this;
+    }
+
+    private void separate() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            long bit = 1L << depth;
+            if ((started & bit) != 0) {
+                write(',');
+            }
+            started |= bit;
+        }
+    }
+
+    private void string(String value) {
+        write('"');
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    write('\\');
+                    write(c);
+                } else if (c < 0x20) {
+                    escapeControl(c);
+                } else {
+                    write(c);
+                }
+            } else if (c < 0x800) {
+                write(0xC0 | c >> 6);
+                write(0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                write(0xF0 | codePoint >> 18);
+                write(0x80 | codePoint >> 12 & 0x3F);
+                write(0x80 | codePoint >> 6 & 0x3F);
+                write(0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                throw new IllegalArgumentException("Unpaired surrogate in string");
+            } else {
+                write(0xE0 | c >> 12);
+                write(0x80 | c >> 6 & 0x3F);
+                write(0x80 | c & 0x3F);
+            }
+        }
+        write('"');
+    }
+
+    private void escapeControl(char c) {
+        write('\\');
+        switch (c) {
+            case '\b': write('b'); return;
+            case '\f': write('f'); return;
+            case '\n': write('n'); return;
+            case '\r': write('r'); return;
+            case '\t': write('t'); return;
+            default:
+                write('u'); write('0'); write('0');
+                write(HEX[c >> 4]);
+                write(HEX[c & 0xF]);
+        }
+    }
+
+    private void write(int b) {
+        ensure(1);
+        buf[size++] = (byte) b;
+    }
+
+    private void write(byte[] bytes, int offset, int length) {
+        ensure(length);
+        System.arraycopy(bytes, offset, buf, size, length);
+        size += length;
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(size + extra, buf.length * 2));
+        }
+    }
+}
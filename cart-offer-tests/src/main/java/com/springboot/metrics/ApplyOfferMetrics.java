@@ -0,0 +1,103 @@
+package com.springboot.metrics;
+
+import com.springboot.offer.OfferType;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stage latencies and outcome counters for apply_offer and its batch variant,
+ * whose carts count as one outcome each. All recording methods are lock-free
+ * and allocation-free.
+ */
+@Component
+public class ApplyOfferMetrics {
+
+    public enum Stage {
+        PARSE, SEGMENT, LOOKUP, SERIALIZE, TOTAL,
+        /** A whole apply_offer/batch request, from parse to serialize. */
+        BATCH
+    }
+
+    public enum Outcome {
+        /** An offer was applied; see {@link #recordApplied(OfferType)}. */
+        APPLIED,
+        /** The restaurant has no offers at all. */
+        NO_OFFER,
+        /** The restaurant has offers, but none for the user's segment. */
+        SEGMENT_MISMATCH,
+        /** The user has no segment. */
+        NO_SEGMENT,
+        /** The segment service did not answer; the cart was priced without a segment. */
+        SEGMENT_UNAVAILABLE
+    }
+
+    private final LatencyHistogram[] stages = new LatencyHistogram[Stage.values().length];
+    private final LongAdder[] outcomes = new LongAdder[Outcome.values().length];
+    private final LongAdder[] appliedByType = new LongAdder[OfferType.values().length];
+    private final LongAdder rateLimited = new LongAdder();
+
+    public ApplyOfferMetrics() {
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = new LongAdder();
+        }
+        for (int i = 0; i < appliedByType.length; i++) {
+            appliedByType[i] = new LongAdder();
+        }
+    }
+
+    public void recordStage(Stage stage, long nanos) {
+        stages[stage.ordinal()].record(nanos);
+    }
+
+    public void recordApplied(OfferType type) {
+        outcomes[Outcome.APPLIED.ordinal()].increment();
+        appliedByType[type.ordinal()].increment();
+    }
+
+    public void recordOutcome(Outcome outcome) {
+        outcomes[outcome.ordinal()].increment();
+    }
+
+    public void recordRateLimited() {
+        rateLimited.increment();
+    }
+
+    public LatencyHistogram getStage(Stage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    public long getOutcomeCount(Outcome outcome) {
+        return outcomes[outcome.ordinal()].sum();
+    }
+
+    public long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    public Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        Map<String, Object> stageSummary = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            stageSummary.put(stage.name().toLowerCase(), stages[stage.ordinal()].summary());
+        }
+        summary.put("stages", stageSummary);
+        Map<String, Object> outcomeSummary = new LinkedHashMap<>();
+        for (Outcome outcome : Outcome.values()) {
+            outcomeSummary.put(outcome.name().toLowerCase(), outcomes[outcome.ordinal()].sum());
+        }
+        summary.put("outcomes", outcomeSummary);
+        Map<String, Object> typeSummary = new LinkedHashMap<>();
+        for (OfferType type : OfferType.values()) {
+            typeSummary.put(type.getTypeName(), appliedByType[type.ordinal()].sum());
+        }
+        summary.put("applied_by_offer_type", typeSummary);
+        summary.put("rate_limited", rateLimited.sum());
+        return summary;
+    }
+}
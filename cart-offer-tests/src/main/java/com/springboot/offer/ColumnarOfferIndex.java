@@ -0,0 +1,473 @@
+package com.springboot.offer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Off-heap variant of {@link OfferIndex} for catalogs of millions of offers.
+ *
+ * <p>Entries are rows of fixed-width columns in direct buffers: the key (the
+ * packed restaurantId and segmentId), the four discount amounts, the version
+ * of the index that wrote the row and the row it replaced. On top of the rows
+ * an open-addressing table, also in direct buffers, maps each key to its
+ * newest row. The heap holds one small buffer object per table chunk and per
+ * block of rows, however large the catalog grows, so the garbage collector
+ * has nothing per offer to trace or copy.
+ *
+ * <p>Rather than copying what it changes, a {@link Mutation} appends rows
+ * stamped with the version it will build and repoints the table at them in
+ * place. A reader of version v follows the links past rows newer than v, so
+ * it sees exactly the batches up to v, as with {@link OfferIndex}. Rows a
+ * mutation writes twice are overwritten in place, so a lookup on the latest
+ * index follows at most one link, past the mutation in progress. Superseded rows are reclaimed by rebuilding into a fresh arena
+ * once they outnumber the live ones; indexes still in use keep the old arena
+ * until they are dropped.
+ *
+ * <p>Only the latest index may be mutated, by a single thread. Starting a
+ * mutation rolls back the previous one if its index was not kept, such as a
+ * batch that failed to persist.
+ */
+final class ColumnarOfferIndex extends EntryIndex {
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    // Table chunks: [int capacity][int count][capacity x long ~key][capacity x int row]
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNKS = 1 << CHUNK_BITS;
+    private static final int CHUNK_HEADER = 8;
+    private static final int MIN_CAPACITY = 8;
+    /** Keys are stored complemented; no key is -1 as segment ids are never negative, so 0 marks a free slot. */
+    private static final long FREE = 0;
+    private static final int NO_ROW = -1;
+
+    // Row blocks: one column after the other, BLOCK_ROWS values each.
+    private static final int BLOCK_BITS = 16;
+    private static final int BLOCK_ROWS = 1 << BLOCK_BITS;
+    private static final int KEY = 0;
+    private static final int FLAT = 1;
+    private static final int PERCENT = 2;
+    private static final int BASE_FLAT = 3;
+    private static final int BASE_PERCENT = 4;
+    private static final int VERSION = 5;
+    private static final int PREVIOUS_OFFSET = 6 * BLOCK_ROWS * Long.BYTES;
+    private static final int BLOCK_BYTES = PREVIOUS_OFFSET + BLOCK_ROWS * Integer.BYTES;
+    /** Flat amount of a row that records a removal. */
+    private static final long TOMBSTONE = -1;
+
+    private final Arena arena;
+    private final ByteBuffer[] chunks;
+    private final long version;
+    private final int size;
+
+    private ColumnarOfferIndex(Arena arena, ByteBuffer[] chunks, long version, int size) {
+        this.arena = arena;
+        this.chunks = chunks;
+        this.version = version;
+        this.size = size;
+    }
+
+    /**
+     * Returns a new, empty index with an arena of its own.
+     */
+    static ColumnarOfferIndex empty() {
+        return new ColumnarOfferIndex(new Arena(0), new ByteBuffer[CHUNKS], 0, 0);
+    }
+
+    private static int chunkOf(int hash) {
+        return hash >>> (32 - CHUNK_BITS);
+    }
+
+    @Override
+    OfferEntry get(int restaurantId, int segmentId) {
+        long key = OfferIndex.key(restaurantId, segmentId);
+        int hash = OfferIndex.hash(key);
+        ByteBuffer chunk = chunks[chunkOf(hash)];
+        if (chunk == null) {
+            return null;
+        }
+        int slot = find(chunk, key, hash);
+        return slot < 0 ? null : visible(rowAt(chunk, slot));
+    }
+
+    @Override
+    int size() {
+        return size;
+    }
+
+    @Override
+    void forEach(Consumer<OfferEntry> action) {
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            forEach(chunk, action);
+        }
+    }
+
+    @Override
+    int chunkCount() {
+        return CHUNKS;
+    }
+
+    @Override
+    void forEach(int chunkIndex, Consumer<OfferEntry> action) {
+        ByteBuffer chunk = chunks[chunkIndex];
+        if (chunk == null) {
+            return;
+        }
+        for (int slot = 0, capacity = capacity(chunk); slot < capacity; slot++) {
+            if ((long) LONGS.getAcquire(chunk, keyOffset(slot)) != FREE) {
+                OfferEntry entry = visible(rowAt(chunk, slot));
+                if (entry != null) {
+                    action.accept(entry);
+                }
+            }
+        }
+    }
+
+    @Override
+    Mutation mutate() {
+        Mutation last = arena.last;
+        if (last != null && last.version > version) {
+            last.rollback();
+        }
+        if (arena.version != version) {
+            throw new IllegalStateException("Index version " + version + " is not the latest, "
+                    + arena.version + " is");
+        }
+        Mutation mutation = new Mutation(this);
+        arena.last = mutation;
+        return mutation;
+    }
+
+    /**
+     * Returns the entry of the newest row in the chain that this index's
+     * version can see, or null if there is none or it is a removal.
+     */
+    private OfferEntry visible(int row) {
+        ByteBuffer[] blocks = arena.blocks;
+        while (row != NO_ROW) {
+            ByteBuffer block = blocks[row >>> BLOCK_BITS];
+            int offset = (row & (BLOCK_ROWS - 1)) * Long.BYTES;
+            if (block.getLong(column(VERSION) + offset) <= version) {
+                return read(block, offset);
+            }
+            row = block.getInt(PREVIOUS_OFFSET + (row & (BLOCK_ROWS - 1)) * Integer.BYTES);
+        }
+        return null;
+    }
+
+    private static OfferEntry read(ByteBuffer block, int offset) {
+        long flat = block.getLong(column(FLAT) + offset);
+        if (flat == TOMBSTONE) {
+            return null;
+        }
+        long key = block.getLong(column(KEY) + offset);
+        return new OfferEntry((int) (key >>> 32), (int) key, flat,
+                block.getLong(column(PERCENT) + offset),
+                block.getLong(column(BASE_FLAT) + offset),
+                block.getLong(column(BASE_PERCENT) + offset));
+    }
+
+    private static int column(int column) {
+        return column * BLOCK_ROWS * Long.BYTES;
+    }
+
+    private static ByteBuffer allocateChunk(int capacity) {
+        int bytes = CHUNK_HEADER + capacity * (Long.BYTES + Integer.BYTES);
+        // Aligned so the table can be read and written with acquire/release semantics.
+        ByteBuffer chunk = ByteBuffer.allocateDirect(bytes + Long.BYTES - 1).alignedSlice(Long.BYTES)
+                .order(ByteOrder.nativeOrder());
+        chunk.putInt(0, capacity);
+        return chunk;
+    }
+
+    private static int capacity(ByteBuffer chunk) {
+        return chunk.getInt(0);
+    }
+
+    private static int count(ByteBuffer chunk) {
+        return chunk.getInt(4);
+    }
+
+    private static int keyOffset(int slot) {
+        return CHUNK_HEADER + slot * Long.BYTES;
+    }
+
+    private static int rowOffset(ByteBuffer chunk, int slot) {
+        return CHUNK_HEADER + capacity(chunk) * Long.BYTES + slot * Integer.BYTES;
+    }
+
+    private static int rowAt(ByteBuffer chunk, int slot) {
+        return (int) INTS.getAcquire(chunk, rowOffset(chunk, slot));
+    }
+
+    /**
+     * Returns the slot holding the key, or -1.
+     */
+    private static int find(ByteBuffer chunk, long key, int hash) {
+        int mask = capacity(chunk) - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            long stored = (long) LONGS.getAcquire(chunk, keyOffset(i));
+            if (stored == ~key) {
+                return i;
+            }
+            if (stored == FREE) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Returns the slot holding the key, or the free slot where it belongs.
+     */
+    private static int probe(ByteBuffer chunk, long key, int hash) {
+        int mask = capacity(chunk) - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            long stored = chunk.getLong(keyOffset(i));
+            if (stored == ~key || stored == FREE) {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * Row storage shared by an index and the indexes mutated from it.
+     * Everything but {@link #blocks} is only touched by the writer.
+     */
+    private static final class Arena {
+        volatile ByteBuffer[] blocks = new ByteBuffer[0];
+        int rows;
+        /** Version of the latest index kept. */
+        long version;
+        Mutation last;
+
+        Arena(long version) {
+            this.version = version;
+        }
+
+        int append(long key, long flat, long percent, long baseFlat, long basePercent, long rowVersion,
+                   int previous) {
+            int row = rows;
+            if (row >>> BLOCK_BITS == blocks.length) {
+                ByteBuffer[] grown = Arrays.copyOf(blocks, blocks.length + 1);
+                grown[blocks.length] = ByteBuffer.allocateDirect(BLOCK_BYTES).order(ByteOrder.nativeOrder());
+                blocks = grown;
+            }
+            ByteBuffer block = blocks[row >>> BLOCK_BITS];
+            int offset = (row & (BLOCK_ROWS - 1)) * Long.BYTES;
+            block.putLong(column(KEY) + offset, key);
+            block.putLong(column(VERSION) + offset, rowVersion);
+            block.putInt(PREVIOUS_OFFSET + (row & (BLOCK_ROWS - 1)) * Integer.BYTES, previous);
+            write(row, flat, percent, baseFlat, basePercent);
+            rows++;
+            return row;
+        }
+
+        void write(int row, long flat, long percent, long baseFlat, long basePercent) {
+            ByteBuffer block = blocks[row >>> BLOCK_BITS];
+            int offset = (row & (BLOCK_ROWS - 1)) * Long.BYTES;
+            block.putLong(column(FLAT) + offset, flat);
+            block.putLong(column(PERCENT) + offset, percent);
+            block.putLong(column(BASE_FLAT) + offset, baseFlat);
+            block.putLong(column(BASE_PERCENT) + offset, basePercent);
+        }
+
+        long versionOf(int row) {
+            return blocks[row >>> BLOCK_BITS].getLong(column(VERSION) + (row & (BLOCK_ROWS - 1)) * Long.BYTES);
+        }
+
+        boolean isRemoval(int row) {
+            return blocks[row >>> BLOCK_BITS].getLong(column(FLAT) + (row & (BLOCK_ROWS - 1)) * Long.BYTES)
+                    == TOMBSTONE;
+        }
+
+        OfferEntry read(int row) {
+            return ColumnarOfferIndex.read(blocks[row >>> BLOCK_BITS], (row & (BLOCK_ROWS - 1)) * Long.BYTES);
+        }
+    }
+
+    static final class Mutation extends EntryIndex.Mutation {
+        private final Arena arena;
+        private final long version;
+        private ByteBuffer[] chunks;
+        private boolean chunksOwned;
+        private int size;
+        // Table slots repointed by this mutation, with the rows they pointed to.
+        private ByteBuffer[] undoChunks = new ByteBuffer[16];
+        private int[] undoOffsets = new int[16];
+        private int[] undoRows = new int[16];
+        private int undoCount;
+
+        private Mutation(ColumnarOfferIndex base) {
+            this.arena = base.arena;
+            this.version = base.version + 1;
+            this.chunks = base.chunks;
+            this.size = base.size;
+        }
+
+        @Override
+        OfferEntry get(int restaurantId, int segmentId) {
+            long key = OfferIndex.key(restaurantId, segmentId);
+            int hash = OfferIndex.hash(key);
+            ByteBuffer chunk = chunks[chunkOf(hash)];
+            if (chunk == null) {
+                return null;
+            }
+            int slot = find(chunk, key, hash);
+            int row = slot < 0 ? NO_ROW : rowAt(chunk, slot);
+            return row == NO_ROW ? null : arena.read(row);
+        }
+
+        @Override
+        void put(OfferEntry entry) {
+            long key = entry.key;
+            int hash = OfferIndex.hash(key);
+            ByteBuffer chunk = writableChunk(chunkOf(hash));
+            int slot = probe(chunk, key, hash);
+            int row = chunk.getLong(keyOffset(slot)) == FREE ? NO_ROW : rowAt(chunk, slot);
+            if (row == NO_ROW || arena.isRemoval(row)) {
+                size++;
+            }
+            if (row != NO_ROW && arena.versionOf(row) == version) {
+                arena.write(row, entry.getFlatDiscount(), entry.getPercentDiscount(),
+                        entry.getBaseFlatDiscount(), entry.getBasePercentDiscount());
+                return;
+            }
+            int added = arena.append(key, entry.getFlatDiscount(), entry.getPercentDiscount(),
+                    entry.getBaseFlatDiscount(), entry.getBasePercentDiscount(), version, row);
+            if (chunk.getLong(keyOffset(slot)) == FREE) {
+                repoint(chunk, slot, added);
+                LONGS.setRelease(chunk, keyOffset(slot), ~key);
+                chunk.putInt(4, count(chunk) + 1);
+            } else {
+                repoint(chunk, slot, added);
+            }
+        }
+
+        @Override
+        void remove(int restaurantId, int segmentId) {
+            long key = OfferIndex.key(restaurantId, segmentId);
+            int hash = OfferIndex.hash(key);
+            ByteBuffer chunk = chunks[chunkOf(hash)];
+            int slot = chunk == null ? -1 : find(chunk, key, hash);
+            int row = slot < 0 ? NO_ROW : rowAt(chunk, slot);
+            if (row == NO_ROW || arena.isRemoval(row)) {
+                return;
+            }
+            size--;
+            if (arena.versionOf(row) == version) {
+                arena.write(row, TOMBSTONE, 0, 0, 0);
+            } else {
+                repoint(chunk, slot, arena.append(key, TOMBSTONE, 0, 0, 0, version, row));
+            }
+        }
+
+        /**
+         * Returns the index, rebuilt into a fresh arena if superseded rows
+         * outnumber the live ones.
+         */
+        @Override
+        ColumnarOfferIndex build() {
+            arena.version = version;
+            if (arena.rows - size > Math.max(size, BLOCK_ROWS)) {
+                return compact();
+            }
+            return new ColumnarOfferIndex(arena, chunks, version, size);
+        }
+
+        private ColumnarOfferIndex compact() {
+            Mutation copy = new ColumnarOfferIndex(new Arena(version - 1), new ByteBuffer[CHUNKS], version - 1, 0)
+                    .mutate();
+            for (ByteBuffer chunk : chunks) {
+                if (chunk == null) {
+                    continue;
+                }
+                for (int slot = 0, capacity = capacity(chunk); slot < capacity; slot++) {
+                    int row = chunk.getLong(keyOffset(slot)) == FREE ? NO_ROW : rowAt(chunk, slot);
+                    OfferEntry entry = row == NO_ROW ? null : arena.read(row);
+                    if (entry != null) {
+                        copy.put(entry);
+                    }
+                }
+            }
+            return copy.build();
+        }
+
+        /**
+         * Points the slot at a new row; readers see the row's columns once
+         * they see the row.
+         */
+        private void repoint(ByteBuffer chunk, int slot, int row) {
+            if (undoCount == undoRows.length) {
+                undoChunks = Arrays.copyOf(undoChunks, undoCount * 2);
+                undoOffsets = Arrays.copyOf(undoOffsets, undoCount * 2);
+                undoRows = Arrays.copyOf(undoRows, undoCount * 2);
+            }
+            int offset = rowOffset(chunk, slot);
+            undoChunks[undoCount] = chunk;
+            undoOffsets[undoCount] = offset;
+            undoRows[undoCount++] = chunk.getLong(keyOffset(slot)) == FREE ? NO_ROW : chunk.getInt(offset);
+            INTS.setRelease(chunk, offset, row);
+        }
+
+        /**
+         * Points every slot this mutation changed back at its previous row.
+         * The rows it appended stay behind, unreferenced, until compaction.
+         */
+        private void rollback() {
+            for (int i = undoCount - 1; i >= 0; i--) {
+                INTS.setRelease(undoChunks[i], undoOffsets[i], undoRows[i]);
+            }
+            undoCount = 0;
+            arena.version = version - 1;
+            arena.last = null;
+        }
+
+        /**
+         * Returns the chunk, allocated or grown so it has room for one more key.
+         * A new or grown chunk goes into a private copy of the chunk array, so
+         * indexes built before keep theirs.
+         */
+        private ByteBuffer writableChunk(int c) {
+            ByteBuffer chunk = chunks[c];
+            if (chunk != null && (count(chunk) + 1) * 2 <= capacity(chunk)) {
+                return chunk;
+            }
+            if (!chunksOwned) {
+                chunks = chunks.clone();
+                chunksOwned = true;
+            }
+            chunks[c] = chunk == null ? allocateChunk(MIN_CAPACITY) : grow(chunk);
+            return chunks[c];
+        }
+
+        /**
+         * Copies the keys that still have rows into a chunk twice the size.
+         */
+        private static ByteBuffer grow(ByteBuffer chunk) {
+            int capacity = capacity(chunk);
+            ByteBuffer grown = allocateChunk(capacity * 2);
+            int mask = capacity * 2 - 1;
+            int count = 0;
+            for (int slot = 0; slot < capacity; slot++) {
+                long stored = chunk.getLong(keyOffset(slot));
+                int row = stored == FREE ? NO_ROW : rowAt(chunk, slot);
+                if (row == NO_ROW) {
+                    continue;
+                }
+                int i = OfferIndex.hash(~stored) & mask;
+                while (grown.getLong(keyOffset(i)) != FREE) {
+                    i = (i + 1) & mask;
+                }
+                grown.putLong(keyOffset(i), stored);
+                grown.putInt(rowOffset(grown, i), row);
+                count++;
+            }
+            grown.putInt(4, count);
+            return grown;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.springboot.offer;
+
+import java.util.function.Consumer;
+
+/**
+ * Immutable view of an index from a (restaurantId, segmentId) pair to its
+ * {@link OfferEntry}, changed through a {@link Mutation} that a single writer
+ * builds from the latest index and then publishes. Published indexes never
+ * change. {@link OfferIndex} keeps the entries on the heap,
+ * {@link ColumnarOfferIndex} in off-heap columns.
+ */
+abstract class EntryIndex {
+
+    /**
+     * Returns the pair's entry, or null if there is none.
+     */
+    abstract OfferEntry get(int restaurantId, int segmentId);
+
+    abstract int size();
+
+    abstract void forEach(Consumer<OfferEntry> action);
+
+    /**
+     * Number of chunks the entries are partitioned into by key hash. It is
+     * the same for every index of a kind, so a chunk holds the same keys in
+     * every version.
+     */
+    abstract int chunkCount();
+
+    /**
+     * Calls the action with the entries of one chunk.
+     */
+    abstract void forEach(int chunk, Consumer<OfferEntry> action);
+
+    abstract Mutation mutate();
+
+    /**
+     * Pending changes to an index. Not thread-safe; meant to be used by the
+     * single writer that then publishes {@link #build()}.
+     */
+    abstract static class Mutation {
+
+        abstract OfferEntry get(int restaurantId, int segmentId);
+
+        abstract void put(OfferEntry entry);
+
+        /**
+         * Removes the pair's entry, if any.
+         */
+        abstract void remove(int restaurantId, int segmentId);
+
+        abstract EntryIndex build();
+    }
+}
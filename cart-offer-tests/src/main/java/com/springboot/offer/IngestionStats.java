@@ -0,0 +1,66 @@
+package com.springboot.offer;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for the offer ingestion pipeline, shared by the ingestion threads
+ * of all shards. The "last batch" values are those of whichever shard
+ * published most recently.
+ */
+public final class IngestionStats {
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private volatile long lastBatchSize;
+    private volatile long lastBatchNanos;
+    private volatile long lastStalenessNanos;
+    private final LongAccumulator maxStalenessNanos = new LongAccumulator(Math::max, 0);
+
+    void recordSubmitted() {
+        submitted.increment();
+    }
+
+    void recordBatch(int size, long buildNanos, long stalenessNanos) {
+        applied.add(size);
+        batches.increment();
+        lastBatchSize = size;
+        lastBatchNanos = buildNanos;
+        lastStalenessNanos = stalenessNanos;
+        maxStalenessNanos.accumulate(stalenessNanos);
+    }
+
+    /** Offers accepted into the ingestion queue. */
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    /** Offers published to readers. */
+    public long getApplied() {
+        return applied.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    /** Time spent building and publishing the last snapshot. */
+    public long getLastBatchNanos() {
+        return lastBatchNanos;
+    }
+
+    /** Longest time an offer of the last batch waited between submission and publication. */
+    public long getLastStalenessNanos() {
+        return lastStalenessNanos;
+    }
+
+    /** Longest time any offer waited between submission and publication. */
+    public long getMaxStalenessNanos() {
+        return maxStalenessNanos.get();
+    }
+}
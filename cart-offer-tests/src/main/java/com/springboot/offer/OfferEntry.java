@@ -0,0 +1,181 @@
+package com.springboot.offer;
+
+/**
+ * Compiled best offer for a single (restaurantId, segment) pair.
+ *
+ * <p>Entries are immutable; registering another offer produces a new entry.
+ * Among offers of the same type only the largest amount can ever win, so the
+ * entry keeps one FLATX amount and one FLATX% rate and evaluates the best of
+ * them on primitive values, without allocating.
+ *
+ * <p>Which of the two wins depends only on the cart value: the flat amount up
+ * to a breakpoint, the percentage from there on. The breakpoint is computed
+ * when the entry is built, so applying is one comparison and at most one
+ * discount computation.
+ *
+ * <p>Offers with a validity window only count while they are active. Their
+ * amounts are folded into the effective amounts but not into the base
+ * amounts, which hold only the offers without a window; when a scheduled
+ * offer expires the entry is rebuilt from its base and the offers still
+ * active.
+ */
+public final class OfferEntry {
+
+    final long key;
+    private final int restaurantId;
+    private final int segmentId;
+    private final long flatDiscount;
+    private final long percentDiscount;
+    private final long flatUpTo;
+    private final long baseFlatDiscount;
+    private final long basePercentDiscount;
+
+    OfferEntry(int restaurantId, int segmentId, long flatDiscount, long percentDiscount) {
+        this(restaurantId, segmentId, flatDiscount, percentDiscount, flatDiscount, percentDiscount);
+    }
+
+    OfferEntry(int restaurantId, int segmentId, long flatDiscount, long percentDiscount,
+               long baseFlatDiscount, long basePercentDiscount) {
+        this.key = OfferIndex.key(restaurantId, segmentId);
+        this.restaurantId = restaurantId;
+        this.segmentId = segmentId;
+        this.flatDiscount = flatDiscount;
+        this.percentDiscount = percentDiscount;
+        long percentFrom = percentFrom(flatDiscount, percentDiscount);
+        // Kept as the last flat cart value so that "never" still holds for a cart of Long.MAX_VALUE.
+        this.flatUpTo = percentFrom == Long.MAX_VALUE ? Long.MAX_VALUE : percentFrom - 1;
+        this.baseFlatDiscount = baseFlatDiscount;
+        this.basePercentDiscount = basePercentDiscount;
+    }
+
+    /**
+     * Smallest cart value for which the percentage beats the flat amount
+     * (FLATX wins ties), or {@link Long#MAX_VALUE} if it never does:
+     * {@code floor(v * p / 100) > f} exactly when {@code v >= ceil(100 * (f + 1) / p)}.
+     */
+    static long percentFrom(long flatDiscount, long percentDiscount) {
+        if (percentDiscount <= 0 || flatDiscount >= Long.MAX_VALUE / 100 - 1) {
+            return Long.MAX_VALUE;
+        }
+        long threshold = 100 * (flatDiscount + 1);
+        return threshold / percentDiscount + (threshold % percentDiscount == 0 ? 0 : 1);
+    }
+
+    static OfferEntry empty(int restaurantId, int segmentId) {
+        return new OfferEntry(restaurantId, segmentId, 0, 0);
+    }
+
+    /**
+     * Returns an entry that also considers the given offer, or this entry if
+     * the offer can never beat the current ones.
+     */
+    OfferEntry with(OfferType type, long amount) {
+        switch (type) {
+            case FLATX:
+                return amount > baseFlatDiscount
+                        ? new OfferEntry(restaurantId, segmentId, Math.max(flatDiscount, amount), percentDiscount,
+                        amount, basePercentDiscount)
+                        : this;
+            case FLATX_PERCENT:
+                return amount > basePercentDiscount
+                        ? new OfferEntry(restaurantId, segmentId, flatDiscount, Math.max(percentDiscount, amount),
+                        baseFlatDiscount, amount)
+                        : this;
+            default:
+                throw new IllegalArgumentException("Unsupported offer type " + type);
+        }
+    }
+
+    /**
+     * Like {@link #with(OfferType, long)} for an active scheduled offer, which
+     * leaves the base amounts alone.
+     */
+    OfferEntry withScheduled(OfferType type, long amount) {
+        switch (type) {
+            case FLATX:
+                return amount > flatDiscount
+                        ? new OfferEntry(restaurantId, segmentId, amount, percentDiscount,
+                        baseFlatDiscount, basePercentDiscount)
+                        : this;
+            case FLATX_PERCENT:
+                return amount > percentDiscount
+                        ? new OfferEntry(restaurantId, segmentId, flatDiscount, amount,
+                        baseFlatDiscount, basePercentDiscount)
+                        : this;
+            default:
+                throw new IllegalArgumentException("Unsupported offer type " + type);
+        }
+    }
+
+    /**
+     * Returns the entry without any scheduled offers.
+     */
+    OfferEntry base() {
+        return flatDiscount == baseFlatDiscount && percentDiscount == basePercentDiscount
+                ? this
+                : new OfferEntry(restaurantId, segmentId, baseFlatDiscount, basePercentDiscount);
+    }
+
+    /**
+     * Returns true if no offer gives a discount, so the entry can be dropped.
+     */
+    boolean isEmpty() {
+        return flatDiscount == 0 && percentDiscount == 0;
+    }
+
+    /**
+     * Returns the cart value after applying the best offer, never below zero.
+     */
+    public long apply(long cartValue) {
+        if (cartValue <= 0) {
+            return cartValue < 0 ? 0 : cartValue;
+        }
+        long discount = cartValue <= flatUpTo ? flatDiscount : OfferType.percentOf(cartValue, percentDiscount);
+        return OfferType.clamp(cartValue, discount);
+    }
+
+    /**
+     * Returns the offer type that {@link #apply(long)} uses for the cart value,
+     * FLATX on a tie, or null if neither gives a discount.
+     */
+    public OfferType bestType(long cartValue) {
+        if (cartValue > flatUpTo) {
+            return OfferType.FLATX_PERCENT;
+        }
+        return flatDiscount == 0 ? null : OfferType.FLATX;
+    }
+
+    public int getRestaurantId() {
+        return restaurantId;
+    }
+
+    public int getSegmentId() {
+        return segmentId;
+    }
+
+    public long getFlatDiscount() {
+        return flatDiscount;
+    }
+
+    public long getPercentDiscount() {
+        return percentDiscount;
+    }
+
+    /** FLATX amount of the offers without a validity window. */
+    public long getBaseFlatDiscount() {
+        return baseFlatDiscount;
+    }
+
+    /** FLATX% rate of the offers without a validity window. */
+    public long getBasePercentDiscount() {
+        return basePercentDiscount;
+    }
+
+    /**
+     * Cart value from which the FLATX% offer wins, or {@link Long#MAX_VALUE}
+     * if the FLATX offer (or no offer) wins for every cart value.
+     */
+    public long getPercentFrom() {
+        return flatUpTo == Long.MAX_VALUE ? Long.MAX_VALUE : flatUpTo + 1;
+    }
+}
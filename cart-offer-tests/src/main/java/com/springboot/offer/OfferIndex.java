@@ -0,0 +1,217 @@
+package com.springboot.offer;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Immutable hash table from a primitive (restaurantId, segmentId) key to its
+ * {@link OfferEntry}.
+ *
+ * <p>The table is split into a fixed number of open-addressing chunks chosen by
+ * the high bits of the key's hash. Lookups are a single probe sequence within
+ * one chunk and never allocate. Changes are made on a {@link Mutation}, which
+ * copies only the chunks it touches and shares the rest with the base index, so
+ * publishing a batch of changes costs O(changed chunks), not O(size).
+ */
+final class OfferIndex extends EntryIndex {
+
+    static final OfferIndex EMPTY;
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNKS = 1 << CHUNK_BITS;
+    private static final OfferEntry[] EMPTY_CHUNK = new OfferEntry[2];
+
+    static {
+        OfferEntry[][] chunks = new OfferEntry[CHUNKS][];
+        Arrays.fill(chunks, EMPTY_CHUNK);
+        EMPTY = new OfferIndex(chunks, 0);
+    }
+
+    private final OfferEntry[][] chunks;
+    private final int size;
+
+    private OfferIndex(OfferEntry[][] chunks, int size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    static long key(int restaurantId, int segmentId) {
+        return ((long) restaurantId << 32) | (segmentId & 0xFFFFFFFFL);
+    }
+
+    static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private static int chunkOf(int hash) {
+        return hash >>> (32 - CHUNK_BITS);
+    }
+
+    @Override
+    OfferEntry get(int restaurantId, int segmentId) {
+        long key = key(restaurantId, segmentId);
+        int hash = hash(key);
+        return find(chunks[chunkOf(hash)], key, hash);
+    }
+
+    @Override
+    int size() {
+        return size;
+    }
+
+    @Override
+    void forEach(Consumer<OfferEntry> action) {
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            forEach(chunk, action);
+        }
+    }
+
+    @Override
+    int chunkCount() {
+        return CHUNKS;
+    }
+
+    @Override
+    void forEach(int chunk, Consumer<OfferEntry> action) {
+        for (OfferEntry e : chunks[chunk]) {
+            if (e != null) {
+                action.accept(e);
+            }
+        }
+    }
+
+    @Override
+    Mutation mutate() {
+        return new Mutation(this);
+    }
+
+    private static OfferEntry find(OfferEntry[] chunk, long key, int hash) {
+        int mask = chunk.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            OfferEntry e = chunk[i];
+            if (e == null || e.key == key) {
+                return e;
+            }
+        }
+    }
+
+    /**
+     * Inserts into a chunk that is known to have a free slot.
+     *
+     * @return true if the key was not present before
+     */
+    private static boolean insert(OfferEntry[] chunk, OfferEntry entry, int hash) {
+        int mask = chunk.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            OfferEntry e = chunk[i];
+            if (e == null || e.key == entry.key) {
+                chunk[i] = entry;
+                return e == null;
+            }
+        }
+    }
+
+    static final class Mutation extends EntryIndex.Mutation {
+        private final OfferEntry[][] chunks;
+        private final boolean[] owned = new boolean[CHUNKS];
+        private final int[] counts = new int[CHUNKS];
+        private int size;
+
+        private Mutation(OfferIndex base) {
+            this.chunks = base.chunks.clone();
+            this.size = base.size;
+        }
+
+        @Override
+        OfferEntry get(int restaurantId, int segmentId) {
+            long key = key(restaurantId, segmentId);
+            int hash = hash(key);
+            return find(chunks[chunkOf(hash)], key, hash);
+        }
+
+        @Override
+        void put(OfferEntry entry) {
+            int hash = hash(entry.key);
+            int c = chunkOf(hash);
+            if (!owned[c]) {
+                counts[c] = count(chunks[c]);
+                chunks[c] = chunks[c].clone();
+                owned[c] = true;
+            }
+            if ((counts[c] + 1) * 2 > chunks[c].length) {
+                chunks[c] = grow(chunks[c]);
+            }
+            if (insert(chunks[c], entry, hash)) {
+                counts[c]++;
+                size++;
+            }
+        }
+
+        @Override
+        void remove(int restaurantId, int segmentId) {
+            long key = key(restaurantId, segmentId);
+            int hash = hash(key);
+            int c = chunkOf(hash);
+            if (find(chunks[c], key, hash) == null) {
+                return;
+            }
+            if (!owned[c]) {
+                counts[c] = count(chunks[c]);
+                chunks[c] = chunks[c].clone();
+                owned[c] = true;
+            }
+            delete(chunks[c], key, hash);
+            counts[c]--;
+            size--;
+        }
+
+        @Override
+        OfferIndex build() {
+            return new OfferIndex(chunks.clone(), size);
+        }
+
+        private static int count(OfferEntry[] chunk) {
+            int n = 0;
+            for (OfferEntry e : chunk) {
+                if (e != null) {
+                    n++;
+                }
+            }
+            return n;
+        }
+
+        /**
+         * Removes a key known to be present and shifts later entries of its
+         * probe sequence back, so that no lookup runs into a hole before them.
+         */
+        private static void delete(OfferEntry[] chunk, long key, int hash) {
+            int mask = chunk.length - 1;
+            int hole = hash & mask;
+            while (chunk[hole].key != key) {
+                hole = (hole + 1) & mask;
+            }
+            for (int i = (hole + 1) & mask; chunk[i] != null; i = (i + 1) & mask) {
+                int home = hash(chunk[i].key) & mask;
+                // Move the entry back unless its home lies cyclically in (hole, i].
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    chunk[hole] = chunk[i];
+                    hole = i;
+                }
+            }
+            chunk[hole] = null;
+        }
+
+        private static OfferEntry[] grow(OfferEntry[] chunk) {
+            OfferEntry[] grown = new OfferEntry[chunk.length * 2];
+            for (OfferEntry e : chunk) {
+                if (e != null) {
+                    insert(grown, e, hash(e.key));
+                }
+            }
+            return grown;
+        }
+    }
+}
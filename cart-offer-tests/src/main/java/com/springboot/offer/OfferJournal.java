@@ -0,0 +1,86 @@
+package com.springboot.offer;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.function.IntFunction;
+
+/**
+ * Durable record of offer registrations, written by the ingestion thread.
+ *
+ * <p>Registrations are idempotent (an entry keeps the best amount per offer
+ * type), so recovery may replay an offer that is already part of a snapshot
+ * without changing the result. Offers with a validity window are persisted
+ * with it and rescheduled on recovery; those that expired meanwhile are
+ * dropped then.
+ */
+public interface OfferJournal extends AutoCloseable {
+
+    /** Most distinct segments an offer may name; counts are persisted as unsigned shorts. */
+    int MAX_SEGMENTS = 0xFFFF;
+    /** Longest segment name in UTF-8 bytes; lengths are persisted as unsigned shorts. */
+    int MAX_SEGMENT_NAME_BYTES = 0xFFFF;
+
+    /** Journal that keeps nothing; offers live only in memory. */
+    OfferJournal NONE = new OfferJournal() {
+        @Override
+        public void recover(Replay replay) {
+        }
+
+        @Override
+        public void append(int restaurantId, OfferType type, long discount, String[] segments,
+                           long startMillis, long endMillis) {
+        }
+
+        @Override
+        public void sync() {
+        }
+
+        @Override
+        public boolean isCompactionDue() {
+            return false;
+        }
+
+        @Override
+        public void compact(Collection<OfferEntry> entries, Collection<ScheduledOffer> scheduled,
+                            IntFunction<String> segmentNames) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /**
+     * Replays every persisted offer, oldest first. Called once, before any
+     * other method.
+     */
+    void recover(Replay replay) throws IOException;
+
+    /**
+     * Buffers one registration. It is not durable until {@link #sync()} returns.
+     */
+    void append(int restaurantId, OfferType type, long discount, String[] segments,
+                long startMillis, long endMillis) throws IOException;
+
+    /**
+     * Writes all buffered registrations and forces them to disk.
+     */
+    void sync() throws IOException;
+
+    boolean isCompactionDue();
+
+    /**
+     * Replaces everything persisted so far with a snapshot of the base amounts
+     * of the given entries plus the scheduled offers that have not expired.
+     */
+    void compact(Collection<OfferEntry> entries, Collection<ScheduledOffer> scheduled,
+                 IntFunction<String> segmentNames) throws IOException;
+
+    @Override
+    void close() throws IOException;
+
+    interface Replay {
+        void offer(int restaurantId, OfferType type, long discount, String segment,
+                   long startMillis, long endMillis);
+    }
+}
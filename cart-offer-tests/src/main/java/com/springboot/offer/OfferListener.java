@@ -0,0 +1,22 @@
+package com.springboot.offer;
+
+/**
+ * Notified by the ingestion threads after an offer registered on this node
+ * has been published. Offers received from replication peers are not
+ * reported, so listeners only ever see local registrations.
+ */
+public interface OfferListener {
+
+    /** Listener that ignores every offer. */
+    OfferListener NONE = (restaurantId, type, discount, segments, startMillis, endMillis) -> {
+    };
+
+    /**
+     * Called once per offer, possibly concurrently from several shards.
+     * Must not block. An offer with a validity window (see
+     * {@link ScheduledOffer}) is reported when it is accepted, not when it
+     * becomes active.
+     */
+    void published(int restaurantId, OfferType type, long discount, String[] segments,
+                   long startMillis, long endMillis);
+}
@@ -0,0 +1,30 @@
+package com.springboot.offer;
+
+/**
+ * Where the best-offer entries of an {@link OfferStore} live, selected with
+ * {@code offer.storage}.
+ */
+public enum OfferStorage {
+
+    /** One {@link OfferEntry} object per (restaurant, segment) pair; the default. */
+    HEAP,
+
+    /** Fixed-width columns in direct buffers, with no heap object per pair. */
+    OFF_HEAP;
+
+    /**
+     * Parses {@code heap} or {@code off-heap}, case-insensitively.
+     */
+    public static OfferStorage fromProperty(String value) {
+        for (OfferStorage storage : values()) {
+            if (storage.name().replace('_', '-').equalsIgnoreCase(value.trim())) {
+                return storage;
+            }
+        }
+        throw new IllegalArgumentException("Unknown offer.storage " + value + ", expected heap or off-heap");
+    }
+
+    EntryIndex emptyIndex() {
+        return this == OFF_HEAP ? ColumnarOfferIndex.empty() : OfferIndex.EMPTY;
+    }
+}
@@ -0,0 +1,814 @@
+package com.springboot.offer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.controller.OfferRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory store of registered offers, indexed by (restaurantId, segment).
+ *
+ * <p>Every registration folds the offer into the precomputed best entry of each
+ * of its segments, so applying an offer is a single hash probe regardless of
+ * how many offers were registered. An offer's segments are interned into a
+ * {@link SegmentSet} at submission, so duplicates fold once and each
+ * restaurant's eligible segments are kept as a bitset as well.
+ *
+ * <p>Registrations are queued and applied by a single ingestion thread in
+ * batches. Each batch is built on an {@link EntryIndex.Mutation}, which
+ * leaves the published index untouched, and published with one volatile write, so readers never lock and always see
+ * either all or none of a batch. With a persistent {@link OfferJournal} the
+ * batch is forced to disk before it is published.
+ *
+ * <p>With {@code offer.shards} above one, restaurants are partitioned by a hash
+ * of their id into shards that each own an index, a queue and an ingestion
+ * thread. Writes for restaurants in different shards are applied in parallel,
+ * and a lookup only touches the index of the restaurant's shard.
+ *
+ * <p>Offers may carry a validity window. Each shard keeps its pending starts
+ * and ends on a {@link TimingWheel} that its ingestion thread advances between
+ * batches: an offer is folded into its entries when its window opens, and
+ * when it closes only the pairs it targets are rebuilt from their base
+ * amounts and the offers still active there. Activation and expiry are O(1)
+ * per offer however many are scheduled, and nothing ever scans the index.
+ * Time comes from an injectable clock, so tests drive it explicitly.
+ *
+ * <p>With {@code offer.storage=off-heap} the entries are kept in fixed-width
+ * off-heap columns ({@link ColumnarOfferIndex}) instead of one heap object
+ * per pair, so heap use and GC work no longer grow with the catalog.
+ */
+@Component
+public class OfferStore implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(OfferStore.class);
+
+    private static final byte[] NO_OFFERS = "[]".getBytes(StandardCharsets.UTF_8);
+
+    private final SegmentRegistry segments = new SegmentRegistry();
+    private final ConcurrentHashMap<Integer, SegmentOffers> bySegment = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, SegmentSet> eligibility = new ConcurrentHashMap<>();
+    private final Set<ScheduledOffer> scheduled = ConcurrentHashMap.newKeySet();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final IngestionStats stats = new IngestionStats();
+    private final Shard[] shards;
+    private final int maxBatchSize;
+    private final OfferJournal journal;
+    private final OfferListener listener;
+    private final LongSupplier clock;
+    private final long pollMillis;
+
+    private volatile boolean closed;
+
+    public OfferStore() {
+        this(10_000, 4096, OfferJournal.NONE);
+    }
+
+    public OfferStore(int queueCapacity, int maxBatchSize, OfferJournal journal) {
+        this(queueCapacity, maxBatchSize, 1, journal, OfferListener.NONE);
+    }
+
+    public OfferStore(int queueCapacity, int maxBatchSize, int shardCount,
+                      OfferJournal journal, OfferListener listener) {
+        this(queueCapacity, maxBatchSize, shardCount, 100, OfferStorage.HEAP, journal, listener,
+                System::currentTimeMillis);
+    }
+
+    /**
+     * Creates the store, restoring whatever the journal has persisted before the
+     * ingestion threads start. Each shard gets its own queue of
+     * {@code queueCapacity} offers. Validity windows are resolved to
+     * {@code scheduleTickMillis}, and entries are kept as {@code storage}
+     * ({@code heap} or {@code off-heap}) says.
+     */
+    @Autowired
+    public OfferStore(@Value("${offer.ingestion.queue-capacity:10000}") int queueCapacity,
+                      @Value("${offer.ingestion.max-batch-size:4096}") int maxBatchSize,
+                      @Value("${offer.shards:1}") int shardCount,
+                      @Value("${offer.schedule.tick-ms:100}") long scheduleTickMillis,
+                      @Value("${offer.storage:heap}") String storage,
+                      OfferJournal journal, OfferListener listener) {
+        this(queueCapacity, maxBatchSize, shardCount, scheduleTickMillis, OfferStorage.fromProperty(storage),
+                journal, listener, System::currentTimeMillis);
+    }
+
+    OfferStore(int queueCapacity, int maxBatchSize, int shardCount, long scheduleTickMillis,
+               OfferStorage storage, OfferJournal journal, OfferListener listener, LongSupplier clock) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("offer.shards must be positive: " + shardCount);
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.journal = journal;
+        this.listener = listener;
+        this.clock = clock;
+        this.pollMillis = Math.min(100, scheduleTickMillis);
+        this.shards = new Shard[shardCount];
+        long now = clock.getAsLong();
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(queueCapacity, storage.emptyIndex(), new TimingWheel<>(scheduleTickMillis, now));
+        }
+        recover();
+        for (int i = 0; i < shardCount; i++) {
+            Shard shard = shards[i];
+            String name = shardCount == 1 ? "offer-ingestion" : "offer-ingestion-" + i;
+            shard.thread = new Thread(() -> ingest(shard), name);
+            shard.thread.setDaemon(true);
+            shard.thread.start();
+        }
+    }
+
+    /**
+     * Queues an offer for registration under all of its segments.
+     *
+     * <p>An offer with a start or end time is registered right away but only
+     * applies within its window; the future completes at registration, not at
+     * activation.
+     *
+     * @return a future completed with true once the offer is visible to readers,
+     *         or with false right away if the offer is malformed, has an unknown
+     *         offer type, a window that ends before it starts, or more segments
+     *         or longer segment names than the {@link OfferJournal} can persist
+     */
+    public CompletableFuture<Boolean> submit(OfferRequest offer) {
+        OfferType type = OfferType.fromName(offer.getOfferType());
+        long startMillis = offer.getStartTime() == null ? ScheduledOffer.NO_START : offer.getStartTime();
+        long endMillis = offer.getEndTime() == null ? ScheduledOffer.NO_END : offer.getEndTime();
+        if (type == null || offer.getDiscount() < 0 || offer.getSegments() == null
+                || startMillis < 0 || endMillis <= startMillis) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return submit(offer.getRestaurantId(), type, offer.getDiscount(), offer.getSegments(),
+                startMillis, endMillis, false);
+    }
+
+    /**
+     * Queues an offer received from a replication peer. It is applied like a
+     * local registration but not reported to the {@link OfferListener}, and
+     * checked against the same journal limits.
+     */
+    public CompletableFuture<Boolean> submitReplica(int restaurantId, OfferType type, long discount,
+                                                    Collection<String> segmentNames,
+                                                    long startMillis, long endMillis) {
+        return submit(restaurantId, type, discount, segmentNames, startMillis, endMillis, true);
+    }
+
+    private CompletableFuture<Boolean> submit(int restaurantId, OfferType type, long discount,
+                                              Collection<String> segmentNames, long startMillis,
+                                              long endMillis, boolean replica) {
+        if (!fitsJournal(segmentNames)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        String[] names = new String[segmentNames.size()];
+        SegmentSet.Builder targets = new SegmentSet.Builder();
+        int count = 0;
+        for (String segment : segmentNames) {
+            if (segment != null && targets.add(segments.intern(segment))) {
+                names[count++] = segment;
+            }
+        }
+        Pending pending = new Pending(restaurantId, type, discount, Arrays.copyOf(names, count),
+                targets.build(), startMillis, endMillis, replica);
+        enqueue(shardOf(restaurantId), pending);
+        if (!pending.result.isCompletedExceptionally()) {
+            stats.recordSubmitted();
+        }
+        return pending.result;
+    }
+
+    /**
+     * Checks the segment count and name lengths before anything is interned.
+     * Duplicates count, which only errs towards rejecting.
+     */
+    private static boolean fitsJournal(Collection<String> segmentNames) {
+        if (segmentNames.size() > OfferJournal.MAX_SEGMENTS) {
+            return false;
+        }
+        for (String segment : segmentNames) {
+            // A char encodes to at most three UTF-8 bytes, so only long names need encoding.
+            if (segment != null && segment.length() > OfferJournal.MAX_SEGMENT_NAME_BYTES / 3
+                    && segment.getBytes(StandardCharsets.UTF_8).length > OfferJournal.MAX_SEGMENT_NAME_BYTES) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void enqueue(Shard shard, Pending pending) {
+        if (closed) {
+            pending.result.completeExceptionally(new IllegalStateException("Offer store is closed"));
+            return;
+        }
+        try {
+            shard.queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Makes every shard advance its schedule to the current clock time.
+     *
+     * @return a future completed once all offers due by then have been
+     *         activated or expired and the result is visible to readers
+     */
+    CompletableFuture<Void> runSchedule() {
+        CompletableFuture<?>[] ticks = new CompletableFuture<?>[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            Pending tick = Pending.tick();
+            enqueue(shards[i], tick);
+            ticks[i] = tick.result;
+        }
+        return CompletableFuture.allOf(ticks);
+    }
+
+    /**
+     * Registers an offer and waits until it is visible to readers.
+     *
+     * @return false if the offer is malformed or has an unknown offer type
+     */
+    public boolean addOffer(OfferRequest offer) {
+        return submit(offer).join();
+    }
+
+    /**
+     * Returns the best-offer entry for the pair, or null if none is registered.
+     */
+    public OfferEntry find(int restaurantId, String segment) {
+        return find(restaurantId, segments.idOf(segment));
+    }
+
+    /**
+     * Same as {@link #find(int, String)} for an already interned segment id.
+     */
+    public OfferEntry find(int restaurantId, int segmentId) {
+        if (segmentId == SegmentRegistry.UNKNOWN) {
+            return null;
+        }
+        return shardOf(restaurantId).index.get(restaurantId, segmentId);
+    }
+
+    /**
+     * Returns the segments the restaurant has offers for. Like
+     * {@link #offersJson(String)} it is updated right after a batch is published.
+     */
+    public SegmentSet segmentsOf(int restaurantId) {
+        SegmentSet eligible = eligibility.get(restaurantId);
+        return eligible == null ? SegmentSet.EMPTY : eligible;
+    }
+
+    /**
+     * Returns true if the restaurant has an offer for any segment.
+     */
+    public boolean hasOffers(int restaurantId) {
+        return eligibility.containsKey(restaurantId);
+    }
+
+    /**
+     * Applies the best offer for the pair to the cart value; returns it unchanged
+     * if the segment is unknown or no offer is registered.
+     */
+    public long applyOffer(int restaurantId, String segment, long cartValue) {
+        OfferEntry entry = find(restaurantId, segment);
+        return entry == null ? cartValue : entry.apply(cartValue);
+    }
+
+    /**
+     * Returns the JSON array of offers visible to the segment. The bytes are
+     * shared between callers and must not be modified.
+     */
+    public byte[] offersJson(String segment) {
+        SegmentOffers offers = bySegment.get(segments.idOf(segment));
+        return offers == null ? NO_OFFERS : offers.json(mapper);
+    }
+
+    public SegmentRegistry getSegments() {
+        return segments;
+    }
+
+    public IngestionStats getIngestionStats() {
+        return stats;
+    }
+
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Shard shard : shards) {
+            depth += shard.queue.size();
+        }
+        return depth;
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Calls the action with every offer whose validity window has not closed
+     * yet, whether or not it has opened.
+     */
+    public void forEachScheduled(Consumer<ScheduledOffer> action) {
+        scheduled.forEach(action);
+    }
+
+    public int getScheduledCount() {
+        return scheduled.size();
+    }
+
+    /**
+     * Calls the action with every best-offer entry currently published.
+     */
+    public void forEachEntry(Consumer<OfferEntry> action) {
+        for (Shard shard : shards) {
+            shard.index.forEach(action);
+        }
+    }
+
+    /**
+     * Calls the action with the published entries of whole index chunks,
+     * starting at {@code position}, until at least {@code limit} entries were
+     * passed or all chunks are done. A chunk holds the same keys in every
+     * version of the index, so successive calls see every entry that stays
+     * published throughout exactly once.
+     *
+     * @return the position to continue from, or -1 after the last chunk
+     */
+    public long forEachEntry(long position, int limit, Consumer<OfferEntry> action) {
+        int[] passed = {0};
+        Consumer<OfferEntry> counting = entry -> {
+            passed[0]++;
+            action.accept(entry);
+        };
+        while (position < (long) shards.length * shards[0].index.chunkCount()) {
+            EntryIndex index = shards[(int) (position / shards[0].index.chunkCount())].index;
+            index.forEach((int) (position % index.chunkCount()), counting);
+            position++;
+            if (passed[0] >= limit) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.index.size();
+        }
+        return size;
+    }
+
+    /**
+     * Stops the ingestion thread after its current batch. Offers still queued
+     * are failed, not applied.
+     */
+    @Override
+    @PreDestroy
+    public void close() {
+        closed = true;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        try {
+            for (Shard shard : shards) {
+                TimeUnit.NANOSECONDS.timedJoin(shard.thread, Math.max(1, deadline - System.nanoTime()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the shard owning the restaurant. The id is mixed first so that
+     * sequential ids spread evenly.
+     */
+    static int shardIndex(int restaurantId, int shardCount) {
+        int hash = restaurantId * 0x9E3779B9;
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) % shardCount;
+    }
+
+    private Shard shardOf(int restaurantId) {
+        return shards.length == 1 ? shards[0] : shards[shardIndex(restaurantId, shards.length)];
+    }
+
+    private void recover() {
+        EntryIndex.Mutation[] mutations = new EntryIndex.Mutation[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            mutations[i] = shards[i].index.mutate();
+        }
+        long now = clock.getAsLong();
+        // Activated entries are published below with the rest of the recovered index.
+        List<OfferEntry> activated = new ArrayList<>();
+        try {
+            journal.recover((restaurantId, type, discount, segment, startMillis, endMillis) -> {
+                int shard = shardIndex(restaurantId, shards.length);
+                int segmentId = segments.intern(segment);
+                if (!ScheduledOffer.isWindowed(startMillis, endMillis)) {
+                    fold(mutations[shard], restaurantId, segmentId, type, discount);
+                } else if (now < endMillis) {
+                    ScheduledOffer offer = new ScheduledOffer(restaurantId, type, discount,
+                            new String[]{segment}, startMillis, endMillis);
+                    scheduled.add(offer);
+                    schedule(shards[shard], mutations[shard], new Timer(offer, SegmentSet.of(segmentId)),
+                            now, activated);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not recover offers", e);
+        }
+        for (int i = 0; i < shards.length; i++) {
+            shards[i].index = mutations[i].build();
+            shards[i].index.forEach(entry -> {
+                updateSegmentOffers(entry);
+                eligibility.merge(entry.getRestaurantId(), SegmentSet.of(entry.getSegmentId()), SegmentSet::or);
+            });
+        }
+    }
+
+    private static OfferEntry fold(EntryIndex.Mutation mutation, int restaurantId, int segmentId,
+                                   OfferType type, long discount) {
+        OfferEntry entry = mutation.get(restaurantId, segmentId);
+        if (entry == null) {
+            entry = OfferEntry.empty(restaurantId, segmentId);
+        }
+        OfferEntry updated = entry.with(type, discount);
+        mutation.put(updated);
+        return updated;
+    }
+
+    private void updateSegmentOffers(OfferEntry entry) {
+        bySegment.computeIfAbsent(entry.getSegmentId(),
+                id -> new SegmentOffers(segments.nameOf(id), restaurantId -> find(restaurantId, id)))
+                .put(entry.getRestaurantId());
+    }
+
+    /**
+     * Activates the offer now if its window is open, or puts its start on the
+     * shard's wheel. Entries it changes are added to {@code changed}.
+     */
+    private void schedule(Shard shard, EntryIndex.Mutation mutation, Timer timer, long now,
+                          List<OfferEntry> changed) {
+        if (timer.offer.getStartMillis() <= now) {
+            activate(shard, mutation, timer, changed);
+        } else {
+            shard.wheel.schedule(timer.offer.getStartMillis(), timer);
+        }
+    }
+
+    private void activate(Shard shard, EntryIndex.Mutation mutation, Timer timer, List<OfferEntry> changed) {
+        foldScheduled(mutation, timer, changed);
+        track(shard, timer);
+    }
+
+    private static void foldScheduled(EntryIndex.Mutation mutation, Timer timer, List<OfferEntry> changed) {
+        ScheduledOffer offer = timer.offer;
+        timer.targets.forEach(segmentId -> {
+            OfferEntry entry = mutation.get(offer.getRestaurantId(), segmentId);
+            if (entry == null) {
+                entry = OfferEntry.empty(offer.getRestaurantId(), segmentId);
+            }
+            OfferEntry updated = entry.withScheduled(offer.getType(), offer.getDiscount());
+            mutation.put(updated);
+            changed.add(updated);
+        });
+    }
+
+    /**
+     * Records the offer as active on its pairs and puts its end on the wheel.
+     */
+    private static void track(Shard shard, Timer timer) {
+        ScheduledOffer offer = timer.offer;
+        timer.active = true;
+        timer.targets.forEach(segmentId -> shard.active
+                .computeIfAbsent(OfferIndex.key(offer.getRestaurantId(), segmentId), k -> new ArrayList<>(2))
+                .add(timer));
+        if (offer.getEndMillis() != ScheduledOffer.NO_END) {
+            shard.wheel.schedule(offer.getEndMillis(), timer);
+        }
+    }
+
+    /**
+     * Withdraws an active offer: each pair it targets is rebuilt from its base
+     * amounts and the other offers active there, and dropped if nothing is
+     * left. Dropped pairs are added to {@code removed}.
+     */
+    private void expire(Shard shard, EntryIndex.Mutation mutation, Timer timer, List<OfferEntry> changed,
+                        List<OfferEntry> removed) {
+        ScheduledOffer offer = timer.offer;
+        timer.targets.forEach(segmentId -> {
+            long key = OfferIndex.key(offer.getRestaurantId(), segmentId);
+            List<Timer> active = shard.active.get(key);
+            active.remove(timer);
+            if (active.isEmpty()) {
+                shard.active.remove(key);
+            }
+            OfferEntry entry = mutation.get(offer.getRestaurantId(), segmentId).base();
+            for (Timer other : active) {
+                entry = entry.withScheduled(other.offer.getType(), other.offer.getDiscount());
+            }
+            if (entry.isEmpty()) {
+                mutation.remove(offer.getRestaurantId(), segmentId);
+                removed.add(entry);
+            } else {
+                mutation.put(entry);
+                changed.add(entry);
+            }
+        });
+        scheduled.remove(offer);
+    }
+
+    /**
+     * Fires every start and end on the shard's wheel that is due by now and
+     * publishes the result. Runs on the shard's ingestion thread only.
+     */
+    private void advanceSchedule(Shard shard) {
+        long now = clock.getAsLong();
+        if (shard.wheel.size() == 0) {
+            shard.wheel.advance(now, timer -> { });
+            return;
+        }
+        EntryIndex.Mutation mutation = shard.index.mutate();
+        List<OfferEntry> changed = new ArrayList<>();
+        List<OfferEntry> removed = new ArrayList<>();
+        shard.wheel.advance(now, timer -> {
+            if (timer.active) {
+                expire(shard, mutation, timer, changed, removed);
+            } else if (now < timer.offer.getEndMillis()) {
+                activate(shard, mutation, timer, changed);
+            } else {
+                // Opened and closed within one tick.
+                scheduled.remove(timer.offer);
+            }
+        });
+        if (changed.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        EntryIndex updated = mutation.build();
+        shard.index = updated;
+        // A pair may change and be dropped, or the reverse, within one advance; the index has the outcome.
+        for (OfferEntry entry : changed) {
+            OfferEntry current = updated.get(entry.getRestaurantId(), entry.getSegmentId());
+            if (current != null) {
+                updateSegmentOffers(current);
+                eligibility.merge(entry.getRestaurantId(), SegmentSet.of(entry.getSegmentId()), SegmentSet::or);
+            }
+        }
+        for (OfferEntry entry : removed) {
+            if (updated.get(entry.getRestaurantId(), entry.getSegmentId()) != null) {
+                continue;
+            }
+            SegmentOffers offers = bySegment.get(entry.getSegmentId());
+            if (offers != null) {
+                offers.remove(entry.getRestaurantId());
+            }
+            eligibility.computeIfPresent(entry.getRestaurantId(), (id, eligible) -> {
+                SegmentSet rest = eligible.andNot(SegmentSet.of(entry.getSegmentId()));
+                return rest.isEmpty() ? null : rest;
+            });
+        }
+    }
+
+    private void ingest(Shard shard) {
+        BlockingQueue<Pending> queue = shard.queue;
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while (!closed) {
+            Pending first;
+            try {
+                // Polled rather than interrupted on close: an interrupt would close the journal's channel.
+                first = queue.poll(pollMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (first != null) {
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                List<Pending> ticks = takeTicks(batch);
+                if (!batch.isEmpty()) {
+                    apply(shard, batch);
+                }
+                batch.clear();
+                advanceSchedule(shard);
+                ticks.forEach(tick -> tick.result.complete(true));
+            } else {
+                advanceSchedule(shard);
+            }
+        }
+        // Fail whatever is left so no caller waits forever.
+        queue.drainTo(batch);
+        for (Pending pending : batch) {
+            pending.result.completeExceptionally(new IllegalStateException("Offer store is closed"));
+        }
+    }
+
+    /**
+     * Removes the {@link #runSchedule()} markers from the batch and returns them.
+     */
+    private static List<Pending> takeTicks(List<Pending> batch) {
+        List<Pending> ticks = new ArrayList<>(0);
+        for (Iterator<Pending> it = batch.iterator(); it.hasNext(); ) {
+            Pending pending = it.next();
+            if (pending.type == null) {
+                ticks.add(pending);
+                it.remove();
+            }
+        }
+        return ticks;
+    }
+
+    private void apply(Shard shard, List<Pending> batch) {
+        long start = System.nanoTime();
+        long now = clock.getAsLong();
+        EntryIndex.Mutation mutation = shard.index.mutate();
+        List<OfferEntry> changed = new ArrayList<>();
+        List<Timer> timers = new ArrayList<>(0);
+        for (Pending pending : batch) {
+            if (!ScheduledOffer.isWindowed(pending.startMillis, pending.endMillis)) {
+                pending.targets.forEach(segmentId ->
+                        changed.add(fold(mutation, pending.restaurantId, segmentId, pending.type, pending.discount)));
+            } else if (now < pending.endMillis && !pending.targets.isEmpty()) {
+                Timer timer = new Timer(new ScheduledOffer(pending.restaurantId, pending.type, pending.discount,
+                        pending.segmentNames, pending.startMillis, pending.endMillis), pending.targets);
+                // Tracked before the journal record exists, so compaction never loses it.
+                scheduled.add(timer.offer);
+                timers.add(timer);
+            }
+        }
+        // Windows that are already open are folded into this batch's publication.
+        for (Timer timer : timers) {
+            if (timer.offer.getStartMillis() <= now) {
+                foldScheduled(mutation, timer, changed);
+            }
+        }
+        EntryIndex updated = mutation.build();
+        try {
+            persistAndPublish(shard, batch, updated);
+        } catch (IOException e) {
+            log.error("Could not persist {} offers", batch.size(), e);
+            for (Timer timer : timers) {
+                scheduled.remove(timer.offer);
+            }
+            for (Pending pending : batch) {
+                pending.result.completeExceptionally(e);
+            }
+            return;
+        }
+        for (Timer timer : timers) {
+            if (timer.offer.getStartMillis() <= now) {
+                track(shard, timer);
+            } else {
+                shard.wheel.schedule(timer.offer.getStartMillis(), timer);
+            }
+        }
+        changed.forEach(this::updateSegmentOffers);
+        for (Pending pending : batch) {
+            if (!pending.targets.isEmpty() && (!ScheduledOffer.isWindowed(pending.startMillis, pending.endMillis)
+                    || pending.startMillis <= now && now < pending.endMillis)) {
+                eligibility.merge(pending.restaurantId, pending.targets, SegmentSet::or);
+            }
+        }
+        for (Pending pending : batch) {
+            if (!pending.replica) {
+                listener.published(pending.restaurantId, pending.type, pending.discount, pending.segmentNames,
+                        pending.startMillis, pending.endMillis);
+            }
+        }
+        long published = System.nanoTime();
+        long staleness = 0;
+        for (Pending pending : batch) {
+            staleness = Math.max(staleness, published - pending.submittedAt);
+        }
+        // Counted before the submitters are released, so they see their offers in the stats.
+        stats.recordBatch(batch.size(), published - start, staleness);
+        for (Pending pending : batch) {
+            pending.result.complete(true);
+        }
+        if (journal != OfferJournal.NONE) {
+            compactIfDue();
+        }
+    }
+
+    /**
+     * Group commit: the whole batch becomes durable before any of it is visible.
+     * The journal is shared by all shards, so appending, syncing and publishing
+     * happen under its lock; compaction then never truncates a synced batch that
+     * is not yet visible. Without persistence shards publish independently.
+     */
+    private void persistAndPublish(Shard shard, List<Pending> batch, EntryIndex updated) throws IOException {
+        if (journal == OfferJournal.NONE) {
+            shard.index = updated;
+            return;
+        }
+        synchronized (journal) {
+            for (Pending pending : batch) {
+                journal.append(pending.restaurantId, pending.type, pending.discount, pending.segmentNames,
+                        pending.startMillis, pending.endMillis);
+            }
+            journal.sync();
+            shard.index = updated;
+        }
+    }
+
+    private void compactIfDue() {
+        synchronized (journal) {
+            if (!journal.isCompactionDue()) {
+                return;
+            }
+            List<OfferEntry> entries = new ArrayList<>(size());
+            for (Shard shard : shards) {
+                shard.index.forEach(entries::add);
+            }
+            try {
+                journal.compact(entries, new ArrayList<>(scheduled), segments::nameOf);
+            } catch (IOException e) {
+                log.warn("Could not compact offer journal", e);
+            }
+        }
+    }
+
+    /**
+     * A partition of the restaurants with its own index, queue and writer.
+     * Only the shard's ingestion thread writes {@link #index}.
+     */
+    private static final class Shard {
+        final BlockingQueue<Pending> queue;
+        final TimingWheel<Timer> wheel;
+        /** Active scheduled offers by {@link OfferIndex#key pair key}. */
+        final HashMap<Long, List<Timer>> active = new HashMap<>();
+        volatile EntryIndex index;
+        Thread thread;
+
+        Shard(int queueCapacity, EntryIndex index, TimingWheel<Timer> wheel) {
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.index = index;
+            this.wheel = wheel;
+        }
+    }
+
+    /**
+     * A scheduled offer on a shard's wheel: due at its start until it has been
+     * activated, then at its end.
+     */
+    private static final class Timer {
+        final ScheduledOffer offer;
+        final SegmentSet targets;
+        boolean active;
+
+        Timer(ScheduledOffer offer, SegmentSet targets) {
+            this.offer = offer;
+            this.targets = targets;
+        }
+    }
+
+    /**
+     * An offer compiled at submission, waiting for the ingestion thread. A
+     * pending without a type is a {@link #runSchedule()} marker.
+     */
+    private static final class Pending {
+        final int restaurantId;
+        final OfferType type;
+        final long discount;
+        final String[] segmentNames;
+        final SegmentSet targets;
+        final long startMillis;
+        final long endMillis;
+        final boolean replica;
+        final long submittedAt = System.nanoTime();
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        Pending(int restaurantId, OfferType type, long discount, String[] segmentNames, SegmentSet targets,
+                long startMillis, long endMillis, boolean replica) {
+            this.restaurantId = restaurantId;
+            this.type = type;
+            this.discount = discount;
+            this.segmentNames = segmentNames;
+            this.targets = targets;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+            this.replica = replica;
+        }
+
+        static Pending tick() {
+            return new Pending(0, null, 0, new String[0], SegmentSet.EMPTY,
+                    ScheduledOffer.NO_START, ScheduledOffer.NO_END, true);
+        }
+    }
+}
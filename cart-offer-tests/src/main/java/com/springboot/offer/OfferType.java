@@ -0,0 +1,74 @@
+package com.springboot.offer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Supported offer types. {@code OfferRequest.offerType} strings are
+ * resolved to one of these once, at registration; the apply path only ever
+ * deals with the compiled amounts.
+ */
+public enum OfferType {
+
+    /** Fixed amount off the cart value. */
+    FLATX("FLATX") {
+        @Override
+        public long discount(long cartValue, long amount) {
+            return amount;
+        }
+    },
+
+    /** Percentage of the cart value, rounded down. */
+    FLATX_PERCENT("FLATX%") {
+        @Override
+        public long discount(long cartValue, long amount) {
+            return percentOf(cartValue, amount);
+        }
+    };
+
+    private static final Map<String, OfferType> BY_NAME = new HashMap<>();
+
+    static {
+        for (OfferType type : values()) {
+            BY_NAME.put(type.typeName, type);
+        }
+    }
+
+    private final String typeName;
+
+    OfferType(String typeName) {
+        this.typeName = typeName;
+    }
+
+    /**
+     * Returns the type for an {@code offerType} string, or null if unsupported.
+     */
+    public static OfferType fromName(String typeName) {
+        return typeName == null ? null : BY_NAME.get(typeName);
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    /**
+     * Discount this offer type gives on the cart value, before clamping.
+     */
+    public abstract long discount(long cartValue, long amount);
+
+    /**
+     * {@code floor(value * percent / 100)} for non-negative inputs, without
+     * overflowing for large cart values.
+     */
+    static long percentOf(long value, long percent) {
+        return value / 100 * percent + value % 100 * percent / 100;
+    }
+
+    /**
+     * Cart value after a discount, never below zero.
+     */
+    static long clamp(long cartValue, long discount) {
+        long result = cartValue - discount;
+        return result < 0 ? 0 : result;
+    }
+}
@@ -0,0 +1,61 @@
+package com.springboot.offer;
+
+/**
+ * An offer with a validity window: it applies from {@code startMillis}
+ * (inclusive) to {@code endMillis} (exclusive), both wall-clock epoch
+ * milliseconds. {@link #NO_START} and {@link #NO_END} leave a side open; an
+ * offer with neither is an ordinary, permanent one.
+ */
+public final class ScheduledOffer {
+
+    public static final long NO_START = 0;
+    public static final long NO_END = Long.MAX_VALUE;
+
+    private final int restaurantId;
+    private final OfferType type;
+    private final long discount;
+    private final String[] segments;
+    private final long startMillis;
+    private final long endMillis;
+
+    public ScheduledOffer(int restaurantId, OfferType type, long discount, String[] segments,
+                          long startMillis, long endMillis) {
+        this.restaurantId = restaurantId;
+        this.type = type;
+        this.discount = discount;
+        this.segments = segments;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+    }
+
+    /**
+     * Returns true unless the window is open on both sides.
+     */
+    public static boolean isWindowed(long startMillis, long endMillis) {
+        return startMillis != NO_START || endMillis != NO_END;
+    }
+
+    public int getRestaurantId() {
+        return restaurantId;
+    }
+
+    public OfferType getType() {
+        return type;
+    }
+
+    public long getDiscount() {
+        return discount;
+    }
+
+    public String[] getSegments() {
+        return segments;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getEndMillis() {
+        return endMillis;
+    }
+}
@@ -0,0 +1,146 @@
+package com.springboot.offer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.controller.OfferRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * The restaurants with an offer entry for one segment, plus a lazily rebuilt,
+ * shared JSON rendering of their entries for the per-user offer list.
+ *
+ * <p>Only restaurant ids are kept, in a primitive array, and entries are
+ * looked up in the store's index when the list is rendered. A pair costs four
+ * bytes here and no {@link OfferEntry} is retained, whichever
+ * {@link OfferStorage} holds the entries. Ids are appended whenever a pair
+ * changes and deduplicated once the array is full; pairs that were dropped
+ * are skipped when rendering and purged by the next deduplication.
+ *
+ * <p>Writes only bump a version; the first read after a change re-serializes
+ * the list once and every later read returns the same immutable bytes until
+ * the next change.
+ */
+final class SegmentOffers {
+
+    private final String segment;
+    private final IntFunction<OfferEntry> lookup;
+    private final AtomicLong version = new AtomicLong();
+    private final Object renderLock = new Object();
+    private volatile Snapshot snapshot;
+
+    // Guarded by this.
+    private int[] restaurants = new int[4];
+    private int count;
+
+    /**
+     * @param lookup returns the restaurant's current entry for the segment
+     */
+    SegmentOffers(String segment, IntFunction<OfferEntry> lookup) {
+        this.segment = segment;
+        this.lookup = lookup;
+    }
+
+    /**
+     * Records that the restaurant's entry changed; call after it is published.
+     */
+    void put(int restaurantId) {
+        synchronized (this) {
+            if (count == restaurants.length) {
+                compact();
+                if (count * 2 > restaurants.length) {
+                    restaurants = Arrays.copyOf(restaurants, restaurants.length * 2);
+                }
+            }
+            restaurants[count++] = restaurantId;
+        }
+        version.incrementAndGet();
+    }
+
+    /**
+     * Records that the restaurant's entry was dropped; call after it is published.
+     */
+    void remove(int restaurantId) {
+        version.incrementAndGet();
+    }
+
+    /**
+     * Returns the segment's offers as a JSON array of {@link OfferRequest}s,
+     * ordered by restaurant. The returned array must not be modified.
+     */
+    byte[] json(ObjectMapper mapper) {
+        Snapshot current = snapshot;
+        long expected = version.get();
+        if (current != null && current.version == expected) {
+            return current.json;
+        }
+        synchronized (renderLock) {
+            current = snapshot;
+            expected = version.get();
+            if (current == null || current.version != expected) {
+                current = new Snapshot(expected, render(mapper));
+                snapshot = current;
+            }
+            return current.json;
+        }
+    }
+
+    /**
+     * Sorts the ids and drops duplicates and restaurants without an entry.
+     */
+    private void compact() {
+        Arrays.sort(restaurants, 0, count);
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int restaurantId = restaurants[i];
+            if ((kept == 0 || restaurants[kept - 1] != restaurantId) && lookup.apply(restaurantId) != null) {
+                restaurants[kept++] = restaurantId;
+            }
+        }
+        count = kept;
+    }
+
+    private byte[] render(ObjectMapper mapper) {
+        int[] ids;
+        synchronized (this) {
+            compact();
+            ids = Arrays.copyOf(restaurants, count);
+        }
+        List<String> segments = Collections.singletonList(segment);
+        List<OfferRequest> offers = new ArrayList<>();
+        for (int restaurantId : ids) {
+            OfferEntry entry = lookup.apply(restaurantId);
+            if (entry == null) {
+                continue;
+            }
+            if (entry.getFlatDiscount() > 0) {
+                offers.add(new OfferRequest(restaurantId, OfferType.FLATX.getTypeName(),
+                        (int) entry.getFlatDiscount(), segments));
+            }
+            if (entry.getPercentDiscount() > 0) {
+                offers.add(new OfferRequest(restaurantId, OfferType.FLATX_PERCENT.getTypeName(),
+                        (int) entry.getPercentDiscount(), segments));
+            }
+        }
+        try {
+            return mapper.writeValueAsBytes(offers);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize offers of segment " + segment, e);
+        }
+    }
+
+    private static final class Snapshot {
+        final long version;
+        final byte[] json;
+
+        Snapshot(long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.springboot.offer;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns segment names (e.g. "p1") to small, dense integer ids so the offer
+ * index can be keyed by primitives instead of strings.
+ */
+public class SegmentRegistry {
+
+    public static final int UNKNOWN = -1;
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[0];
+
+    /**
+     * Returns the id of the given segment, assigning a new one if needed.
+     */
+    public int intern(String segment) {
+        Integer id = ids.get(segment);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(segment);
+            if (id == null) {
+                String[] current = names;
+                String[] grown = java.util.Arrays.copyOf(current, current.length + 1);
+                grown[current.length] = segment;
+                id = current.length;
+                names = grown;
+                ids.put(segment, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Returns the id of an already registered segment, or {@link #UNKNOWN}.
+     */
+    public int idOf(String segment) {
+        if (segment == null) {
+            return UNKNOWN;
+        }
+        Integer id = ids.get(segment);
+        return id == null ? UNKNOWN : id;
+    }
+
+    public String nameOf(int id) {
+        String[] current = names;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    public int size() {
+        return names.length;
+    }
+}
@@ -0,0 +1,143 @@
+package com.springboot.offer;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable set of interned segment ids, stored as a bitset. Segment ids are
+ * dense, so an offer targeting dozens of segments costs one or two words and
+ * eligibility is a single bit test.
+ */
+public final class SegmentSet {
+
+    public static final SegmentSet EMPTY = new SegmentSet(new long[0]);
+
+    private final long[] words;
+
+    private SegmentSet(long[] words) {
+        this.words = words;
+    }
+
+    public static SegmentSet of(int... segmentIds) {
+        Builder builder = new Builder();
+        for (int segmentId : segmentIds) {
+            builder.add(segmentId);
+        }
+        return builder.build();
+    }
+
+    public boolean contains(int segmentId) {
+        int word = segmentId >>> 6;
+        return segmentId >= 0 && word < words.length && (words[word] & (1L << segmentId)) != 0;
+    }
+
+    public boolean isEmpty() {
+        return words.length == 0;
+    }
+
+    public int size() {
+        int n = 0;
+        for (long word : words) {
+            n += Long.bitCount(word);
+        }
+        return n;
+    }
+
+    /**
+     * Returns the union of both sets, or one of them if it already contains the
+     * other.
+     */
+    public SegmentSet or(SegmentSet other) {
+        SegmentSet longer = words.length >= other.words.length ? this : other;
+        SegmentSet shorter = longer == this ? other : this;
+        long[] union = null;
+        for (int i = 0; i < shorter.words.length; i++) {
+            long merged = longer.words[i] | shorter.words[i];
+            if (merged != longer.words[i]) {
+                if (union == null) {
+                    union = longer.words.clone();
+                }
+                union[i] = merged;
+            }
+        }
+        return union == null ? longer : new SegmentSet(union);
+    }
+
+    /**
+     * Returns the ids of this set that are not in the other one, or this set
+     * if they share none.
+     */
+    public SegmentSet andNot(SegmentSet other) {
+        long[] rest = null;
+        int n = Math.min(words.length, other.words.length);
+        for (int i = 0; i < n; i++) {
+            if ((words[i] & other.words[i]) != 0) {
+                if (rest == null) {
+                    rest = words.clone();
+                }
+                rest[i] &= ~other.words[i];
+            }
+        }
+        if (rest == null) {
+            return this;
+        }
+        int length = rest.length;
+        while (length > 0 && rest[length - 1] == 0) {
+            length--;
+        }
+        return length == 0 ? EMPTY : new SegmentSet(Arrays.copyOf(rest, length));
+    }
+
+    /**
+     * Calls the action with every segment id in the set, in ascending order.
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < words.length; i++) {
+            for (long word = words[i]; word != 0; word &= word - 1) {
+                action.accept(i << 6 | Long.numberOfTrailingZeros(word));
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SegmentSet && Arrays.equals(words, ((SegmentSet) o).words);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+
+    /**
+     * Accumulates segment ids; not thread-safe.
+     */
+    public static final class Builder {
+        private long[] words = new long[1];
+
+        /**
+         * Adds the id; returns false if it was already present.
+         */
+        public boolean add(int segmentId) {
+            if (segmentId < 0) {
+                throw new IllegalArgumentException("Negative segment id " + segmentId);
+            }
+            int word = segmentId >>> 6;
+            if (word >= words.length) {
+                words = Arrays.copyOf(words, Math.max(word + 1, words.length * 2));
+            }
+            long bit = 1L << segmentId;
+            boolean added = (words[word] & bit) == 0;
+            words[word] |= bit;
+            return added;
+        }
+
+        public SegmentSet build() {
+            int length = words.length;
+            while (length > 0 && words[length - 1] == 0) {
+                length--;
+            }
+            return length == 0 ? EMPTY : new SegmentSet(Arrays.copyOf(words, length));
+        }
+    }
+}
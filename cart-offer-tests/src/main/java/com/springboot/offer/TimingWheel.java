@@ -0,0 +1,130 @@
+package com.springboot.offer;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel (Varghese and Lauck) for millions of far-apart
+ * deadlines.
+ *
+ * <p>Time advances in ticks. Level 0 has one slot per tick for the next 64
+ * ticks, level 1 one slot per 64 ticks for the next 64<sup>2</sup>, and so
+ * on; eleven levels cover every {@code long} deadline. Scheduling picks the
+ * level from the distance to the deadline and pushes onto a slot's list, and
+ * firing pops a level-0 slot, so both are O(1). Whenever the lower levels
+ * wrap, the next slot of the level above is cascaded down; an item is moved
+ * at most once per level. Nothing ever scans the items that are not yet due.
+ *
+ * <p>Not thread-safe; meant to be owned by a single thread.
+ */
+final class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = (Long.SIZE + SLOT_BITS - 1) / SLOT_BITS;
+
+    private final long tickMillis;
+    private final Node<T>[][] slots;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMillis, long nowMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive: " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        this.slots = new Node[LEVELS][SLOTS];
+        this.currentTick = Math.max(0, nowMillis) / tickMillis;
+    }
+
+    /**
+     * Schedules the item to fire on the first {@link #advance} to a time at or
+     * after {@code deadlineMillis}, rounded up to whole ticks. A deadline that
+     * has already passed fires on the next advance.
+     */
+    void schedule(long deadlineMillis, T item) {
+        long tick = deadlineMillis / tickMillis + (deadlineMillis % tickMillis == 0 ? 0 : 1);
+        place(new Node<>(item, Math.max(tick, currentTick + 1)));
+        size++;
+    }
+
+    /**
+     * Moves time forward to {@code nowMillis}, passing every item whose
+     * deadline has been reached to {@code expired}, in deadline order up to
+     * tick granularity.
+     */
+    void advance(long nowMillis, Consumer<T> expired) {
+        long target = nowMillis / tickMillis;
+        if (size == 0) {
+            // Nothing to cascade or fire; an idle wheel catches up in one step.
+            currentTick = Math.max(currentTick, target);
+            return;
+        }
+        while (currentTick < target) {
+            currentTick++;
+            cascade();
+            int slot = (int) (currentTick & MASK);
+            Node<T> node = slots[0][slot];
+            slots[0][slot] = null;
+            for (; node != null; node = node.next) {
+                size--;
+                expired.accept(node.item);
+            }
+        }
+    }
+
+    /** Number of items scheduled and not yet fired. */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Re-places the items of the current slot of every level whose lower
+     * levels have all wrapped to zero; they now fall into lower levels. Higher
+     * levels go first, so items they hand down are cascaded further right away.
+     */
+    private void cascade() {
+        int top = 0;
+        while (top < LEVELS - 1 && (currentTick & ((1L << ((top + 1) * SLOT_BITS)) - 1)) == 0) {
+            top++;
+        }
+        for (int level = top; level > 0; level--) {
+            int slot = (int) ((currentTick >>> (level * SLOT_BITS)) & MASK);
+            Node<T> node = slots[level][slot];
+            slots[level][slot] = null;
+            while (node != null) {
+                Node<T> next = node.next;
+                place(node);
+                node = next;
+            }
+        }
+    }
+
+    /**
+     * Places a node on the lowest level whose span covers its distance. On
+     * level {@code l} the distance is at least 64<sup>l</sup> ticks, so the
+     * slot is reached, and cascaded, no later than the deadline.
+     */
+    private void place(Node<T> node) {
+        long delta = node.tick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << ((level + 1) * SLOT_BITS)) {
+            level++;
+        }
+        int slot = (int) ((node.tick >>> (level * SLOT_BITS)) & MASK);
+        node.next = slots[level][slot];
+        slots[level][slot] = node;
+    }
+
+    private static final class Node<T> {
+        final T item;
+        final long tick;
+        Node<T> next;
+
+        Node(T item, long tick) {
+            this.item = item;
+            this.tick = tick;
+        }
+    }
+}
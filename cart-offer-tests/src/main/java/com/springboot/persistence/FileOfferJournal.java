@@ -0,0 +1,221 @@
+package com.springboot.persistence;
+
+import com.springboot.offer.OfferEntry;
+import com.springboot.offer.OfferJournal;
+import com.springboot.offer.OfferType;
+import com.springboot.offer.ScheduledOffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32;
+
+/**
+ * {@link OfferJournal} backed by an append-only log plus a compacted snapshot.
+ *
+ * <p>Log records are {@code [int length][int crc32][payload]} with the payload
+ * {@code [int restaurantId][byte type][long discount][short n]([short len][utf8])*n}, followed by
+ * {@code [long startMillis][long endMillis]} for offers with a validity window.
+ * Records of a batch are buffered and written and forced together in
+ * {@link #sync()} (group commit). A torn or corrupt tail left by a crash is
+ * detected by its length or checksum and truncated on recovery.
+ *
+ * <p>Counts and lengths are unsigned shorts, so offers beyond
+ * {@link #MAX_SEGMENTS} or {@link #MAX_SEGMENT_NAME_BYTES} are refused rather
+ * than written truncated; {@code OfferStore} rejects them before they get here.
+ *
+ * <p>Once the log grows past the compaction threshold the whole index is
+ * written to a new {@link OfferSnapshotFile} and the log is truncated. Because
+ * registrations are idempotent, a crash between the two steps only means some
+ * records are replayed on top of a snapshot that already contains them. The
+ * snapshot's rename is forced to disk before the log is truncated, so a crash
+ * cannot leave the old snapshot next to an empty log.
+ */
+public class FileOfferJournal implements OfferJournal {
+
+    static final String LOG_FILE = "offers.log";
+    static final String SNAPSHOT_FILE = "offers.snapshot";
+
+    private static final int HEADER_BYTES = 8;
+    private static final int WINDOW_BYTES = 16;
+
+    private final Path logPath;
+    private final Path snapshotPath;
+    private final long compactionBytes;
+    private final FileChannel log;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+    public FileOfferJournal(Path directory, long compactionBytes) throws IOException {
+        Files.createDirectories(directory);
+        this.logPath = directory.resolve(LOG_FILE);
+        this.snapshotPath = directory.resolve(SNAPSHOT_FILE);
+        this.compactionBytes = compactionBytes;
+        this.log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public void recover(Replay replay) throws IOException {
+        if (Files.exists(snapshotPath)) {
+            OfferSnapshotFile.read(snapshotPath, replay);
+        }
+        long valid = replayLog(replay);
+        if (valid < log.size()) {
+            log.truncate(valid);
+            log.force(true);
+        }
+        log.position(valid);
+    }
+
+    /**
+     * Replays log records up to the first incomplete or corrupt one.
+     *
+     * @return the length of the valid prefix of the log
+     */
+    private long replayLog(Replay replay) throws IOException {
+        long size = log.size();
+        if (size == 0) {
+            return 0;
+        }
+        ByteBuffer in = log.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        while (in.remaining() >= HEADER_BYTES) {
+            int start = in.position();
+            int length = in.getInt();
+            int checksum = in.getInt();
+            if (length <= 0 || length > in.remaining()) {
+                return start;
+            }
+            ByteBuffer payload = in.slice();
+            payload.limit(length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                return start;
+            }
+            int restaurantId = payload.getInt();
+            OfferType type = OfferType.values()[payload.get()];
+            long discount = payload.getLong();
+            String[] segments = new String[payload.getShort() & 0xFFFF];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = readString(payload);
+            }
+            long startMillis = ScheduledOffer.NO_START;
+            long endMillis = ScheduledOffer.NO_END;
+            if (payload.remaining() >= WINDOW_BYTES) {
+                startMillis = payload.getLong();
+                endMillis = payload.getLong();
+            }
+            for (String segment : segments) {
+                replay.offer(restaurantId, type, discount, segment, startMillis, endMillis);
+            }
+            in.position(start + HEADER_BYTES + length);
+        }
+        return in.position();
+    }
+
+    @Override
+    public void append(int restaurantId, OfferType type, long discount, String[] segments,
+                       long startMillis, long endMillis) throws IOException {
+        boolean windowed = ScheduledOffer.isWindowed(startMillis, endMillis);
+        int length = 4 + 1 + 8 + 2 + (windowed ? WINDOW_BYTES : 0);
+        if (segments.length > MAX_SEGMENTS) {
+            throw new IOException(segments.length + " segments exceed the journal's " + MAX_SEGMENTS);
+        }
+        byte[][] names = new byte[segments.length][];
+        for (int i = 0; i < segments.length; i++) {
+            names[i] = segments[i].getBytes(StandardCharsets.UTF_8);
+            if (names[i].length > MAX_SEGMENT_NAME_BYTES) {
+                throw new IOException("Segment name of " + names[i].length + " bytes exceeds the journal's "
+                        + MAX_SEGMENT_NAME_BYTES);
+            }
+            length += 2 + names[i].length;
+        }
+        ensureCapacity(HEADER_BYTES + length);
+        int start = buffer.position();
+        buffer.putInt(length).putInt(0);
+        buffer.putInt(restaurantId).put((byte) type.ordinal()).putLong(discount).putShort((short) names.length);
+        for (byte[] name : names) {
+            buffer.putShort((short) name.length).put(name);
+        }
+        if (windowed) {
+            buffer.putLong(startMillis).putLong(endMillis);
+        }
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(start + HEADER_BYTES).limit(buffer.position());
+        crc.reset();
+        crc.update(payload);
+        buffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    @Override
+    public void sync() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        long committed = log.position();
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                log.write(buffer);
+            }
+            log.force(false);
+        } catch (IOException e) {
+            // Drop the partial batch so later records don't end up behind a torn one.
+            log.truncate(committed);
+            log.position(committed);
+            throw e;
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public boolean isCompactionDue() {
+        try {
+            return log.size() >= compactionBytes;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void compact(Collection<OfferEntry> entries, Collection<ScheduledOffer> scheduled,
+                        IntFunction<String> segmentNames) throws IOException {
+        sync();
+        OfferSnapshotFile.write(snapshotPath, entries, scheduled, segmentNames);
+        log.truncate(0);
+        log.position(0);
+        log.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            log.close();
+        }
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+
+    static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,177 @@
+package com.springboot.persistence;
+
+import com.springboot.offer.OfferEntry;
+import com.springboot.offer.OfferJournal;
+import com.springboot.offer.OfferType;
+import com.springboot.offer.ScheduledOffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32;
+
+/**
+ * Fixed-layout snapshot of the offer index.
+ *
+ * <pre>
+ * [int magic][int version][int segmentCount][int entryCount][int scheduledCount]
+ * segmentCount   x [short len][utf8 name]
+ * entryCount     x [int restaurantId][int segmentIndex][long flatDiscount][long percentDiscount]
+ * scheduledCount x [int restaurantId][int segmentIndex][byte type][long discount][long startMillis][long endMillis]
+ * [int crc32 of everything above]
+ * </pre>
+ *
+ * <p>Entries hold the amounts of offers without a validity window; offers
+ * with one are kept separately with their window. Version 1 files have no
+ * {@code scheduledCount} and no scheduled records and are still read.
+ *
+ * <p>Records have a fixed width, so the file is read through a
+ * {@link MappedByteBuffer} with no parsing beyond primitive reads. A snapshot
+ * is written to a temporary file, forced and atomically renamed, so readers
+ * only ever see complete snapshots. The directory is forced after the rename,
+ * so once {@link #write} returns the new snapshot survives a crash.
+ */
+final class OfferSnapshotFile {
+
+    private static final int MAGIC = 0x4F465253; // "OFRS"
+    private static final int VERSION = 2;
+    private static final int ENTRY_BYTES = 4 + 4 + 8 + 8;
+    private static final int SCHEDULED_BYTES = 4 + 4 + 1 + 8 + 8 + 8;
+
+    private OfferSnapshotFile() {
+    }
+
+    static void write(Path path, Collection<OfferEntry> entries, Collection<ScheduledOffer> scheduled,
+                      IntFunction<String> segmentNames) throws IOException {
+        Map<String, Integer> segmentIndexes = new HashMap<>();
+        List<byte[]> names = new ArrayList<>();
+        long namesBytes = 0;
+        long scheduledRecords = 0;
+        for (OfferEntry entry : entries) {
+            namesBytes += index(segmentNames.apply(entry.getSegmentId()), segmentIndexes, names);
+        }
+        for (ScheduledOffer offer : scheduled) {
+            for (String segment : offer.getSegments()) {
+                namesBytes += index(segment, segmentIndexes, names);
+                scheduledRecords++;
+            }
+        }
+        long size = 20L + namesBytes + (long) entries.size() * ENTRY_BYTES + scheduledRecords * SCHEDULED_BYTES + 4;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot of " + entries.size() + " entries exceeds 2 GB");
+        }
+        ByteBuffer out = ByteBuffer.allocate((int) size);
+        out.putInt(MAGIC).putInt(VERSION).putInt(names.size()).putInt(entries.size()).putInt((int) scheduledRecords);
+        for (byte[] name : names) {
+            out.putShort((short) name.length).put(name);
+        }
+        for (OfferEntry entry : entries) {
+            out.putInt(entry.getRestaurantId())
+                    .putInt(segmentIndexes.get(segmentNames.apply(entry.getSegmentId())))
+                    .putLong(entry.getBaseFlatDiscount())
+                    .putLong(entry.getBasePercentDiscount());
+        }
+        for (ScheduledOffer offer : scheduled) {
+            for (String segment : offer.getSegments()) {
+                out.putInt(offer.getRestaurantId())
+                        .putInt(segmentIndexes.get(segment))
+                        .put((byte) offer.getType().ordinal())
+                        .putLong(offer.getDiscount())
+                        .putLong(offer.getStartMillis())
+                        .putLong(offer.getEndMillis());
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(out.array(), 0, out.position());
+        out.putInt((int) crc.getValue());
+        out.flip();
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        try (FileChannel directory = FileChannel.open(path.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        }
+    }
+
+    static void read(Path path, OfferJournal.Replay replay) throws IOException {
+        MappedByteBuffer in;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int version = in.limit() < 20 ? 0 : in.getInt(4);
+        if (version < 1 || version > VERSION || in.getInt(0) != MAGIC) {
+            throw new IOException("Not an offer snapshot: " + path);
+        }
+        CRC32 crc = new CRC32();
+        ByteBuffer body = in.duplicate();
+        body.limit(in.limit() - 4);
+        crc.update(body);
+        if ((int) crc.getValue() != in.getInt(in.limit() - 4)) {
+            throw new IOException("Corrupt offer snapshot: " + path);
+        }
+        in.position(8);
+        String[] segments = new String[in.getInt()];
+        int entries = in.getInt();
+        int scheduled = version >= 2 ? in.getInt() : 0;
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = FileOfferJournal.readString(in);
+        }
+        for (int i = 0; i < entries; i++) {
+            int restaurantId = in.getInt();
+            String segment = segments[in.getInt()];
+            long flat = in.getLong();
+            long percent = in.getLong();
+            if (flat > 0) {
+                replay.offer(restaurantId, OfferType.FLATX, flat, segment,
+                        ScheduledOffer.NO_START, ScheduledOffer.NO_END);
+            }
+            if (percent > 0) {
+                replay.offer(restaurantId, OfferType.FLATX_PERCENT, percent, segment,
+                        ScheduledOffer.NO_START, ScheduledOffer.NO_END);
+            }
+        }
+        for (int i = 0; i < scheduled; i++) {
+            int restaurantId = in.getInt();
+            String segment = segments[in.getInt()];
+            OfferType type = OfferType.values()[in.get()];
+            long discount = in.getLong();
+            long startMillis = in.getLong();
+            long endMillis = in.getLong();
+            replay.offer(restaurantId, type, discount, segment, startMillis, endMillis);
+        }
+    }
+
+    /**
+     * Assigns the segment an index if it has none yet.
+     *
+     * @return the bytes its name adds to the snapshot
+     */
+    private static int index(String segment, Map<String, Integer> segmentIndexes, List<byte[]> names) {
+        if (segmentIndexes.containsKey(segment)) {
+            return 0;
+        }
+        segmentIndexes.put(segment, names.size());
+        byte[] name = segment.getBytes(StandardCharsets.UTF_8);
+        names.add(name);
+        return 2 + name.length;
+    }
+}
@@ -0,0 +1,132 @@
+package com.springboot.ratelimit;
+
+import com.springboot.controller.CartOfferCodec;
+import com.springboot.json.JsonSyntaxException;
+import com.springboot.metrics.ApplyOfferMetrics;
+import com.springboot.security.Role;
+import com.springboot.security.RoleAuthorizationFilter;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Rejects requests with HTTP 429 once either the caller's own bucket or the
+ * bucket shared by its {@code user_role} is empty.
+ *
+ * <p>Callers are identified by the {@code user_id} in the apply_offer body,
+ * which is the user the cart is priced for, never by a header a client could
+ * set to anything. The body is read here and replayed to the controller.
+ * Bodies that do not decode as a single apply_offer request, batch calls
+ * included, are keyed on the remote address.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final byte[] TOO_MANY_REQUESTS =
+            "{\"response_msg\":\"rate limit exceeded\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final TokenBucketLimiter userLimiter;
+    private final TokenBucketLimiter roleLimiter;
+    private final ApplyOfferMetrics metrics;
+
+    public RateLimitFilter(TokenBucketLimiter userLimiter, TokenBucketLimiter roleLimiter,
+                           ApplyOfferMetrics metrics) {
+        this.userLimiter = userLimiter;
+        this.roleLimiter = roleLimiter;
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        byte[] body = StreamUtils.copyToByteArray(request.getInputStream());
+        if (!userLimiter.tryAcquire(clientId(request, body)) || !roleLimiter.tryAcquire(roleId(request))) {
+            metrics.recordRateLimited();
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setContentLength(TOO_MANY_REQUESTS.length);
+            response.getOutputStream().write(TOO_MANY_REQUESTS);
+            return;
+        }
+        chain.doFilter(new BufferedBodyRequest(request, body), response);
+    }
+
+    private static int clientId(HttpServletRequest request, byte[] body) {
+        try {
+            return CartOfferCodec.readApplyOffer(body).getUserId();
+        } catch (JsonSyntaxException e) {
+            // Keep address-keyed clients apart from user ids.
+            return ~request.getRemoteAddr().hashCode();
+        }
+    }
+
+    private static int roleId(HttpServletRequest request) {
+        // Unknown roles were already rejected by RoleAuthorizationFilter.
+        Role role = Role.fromHeader(request.getHeader(RoleAuthorizationFilter.USER_ROLE_HEADER));
+        return role == null ? 0 : role.ordinal() + 1;
+    }
+
+    /**
+     * Serves the body already read by the filter to the rest of the chain.
+     */
+    private static final class BufferedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        BufferedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding == null ? StandardCharsets.UTF_8.name() : encoding));
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.springboot.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets for many clients in a fixed amount of memory.
+ *
+ * <p>Buckets live in two preallocated arrays: one holding the client each slot
+ * belongs to and one holding the bucket state packed into a single long (last
+ * refill time in milliseconds and the token count in thousandths), so refill
+ * and take is a single CAS. A client's bucket is found by probing a few slots
+ * from its hash. A slot whose bucket has been idle long enough to be full again
+ * carries no information and is simply taken over by the next client that
+ * needs it; there is no background eviction. When all probed slots are in use
+ * the client shares its home slot, which errs on the side of limiting.
+ */
+public class TokenBucketLimiter {
+
+    private static final int PROBES = 4;
+    private static final int TOKEN_BITS = 24;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final long MILLI = 1000;
+
+    private final AtomicLongArray owners;
+    private final AtomicLongArray states;
+    private final int mask;
+    private final long capacity;
+    private final long refillPerMilli;
+    private final long idleMillis;
+    private final LongSupplier clock;
+    private final long origin;
+
+    /**
+     * @param slots            number of buckets kept, rounded up to a power of two;
+     *                         memory use is 16 bytes per slot
+     * @param capacity         burst size in requests
+     * @param refillPerSecond  sustained requests per second
+     */
+    public TokenBucketLimiter(int slots, int capacity, int refillPerSecond) {
+        this(slots, capacity, refillPerSecond, System::nanoTime);
+    }
+
+    TokenBucketLimiter(int slots, int capacity, int refillPerSecond, LongSupplier nanoClock) {
+        if (capacity <= 0 || capacity * MILLI > TOKEN_MASK) {
+            throw new IllegalArgumentException("capacity must be between 1 and " + TOKEN_MASK / MILLI);
+        }
+        if (refillPerSecond <= 0) {
+            throw new IllegalArgumentException("refillPerSecond must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(slots, PROBES) - 1) << 1;
+        this.owners = new AtomicLongArray(size);
+        this.states = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.capacity = capacity * MILLI;
+        // Milli-tokens per millisecond equals tokens per second.
+        this.refillPerMilli = refillPerSecond;
+        this.idleMillis = (this.capacity + refillPerMilli - 1) / refillPerMilli;
+        this.clock = nanoClock;
+        this.origin = nanoClock.getAsLong();
+    }
+
+    /**
+     * Takes one token from the client's bucket.
+     *
+     * @return false if the bucket is empty and the request should be rejected
+     */
+    public boolean tryAcquire(int clientId) {
+        long now = TimeUnit.NANOSECONDS.toMillis(clock.getAsLong() - origin);
+        return take(slotFor(owner(clientId), now), now);
+    }
+
+    private static long owner(int clientId) {
+        // Never zero, which marks an unused slot.
+        return ((long) clientId << 1) | 1;
+    }
+
+    private static int hash(long owner) {
+        owner *= 0x9E3779B97F4A7C15L;
+        return (int) (owner ^ (owner >>> 32));
+    }
+
+    private int slotFor(long owner, long now) {
+        int home = hash(owner) & mask;
+        for (int p = 0; p < PROBES; p++) {
+            int slot = (home + p) & mask;
+            long current = owners.get(slot);
+            if (current == owner) {
+                return slot;
+            }
+            if (current == 0 || now - time(states.get(slot)) >= idleMillis) {
+                if (owners.compareAndSet(slot, current, owner)) {
+                    // A full bucket as of now. A concurrent take by the previous owner
+                    // may be lost, which only ever errs towards allowing one request.
+                    states.set(slot, pack(now, capacity));
+                    return slot;
+                }
+                if (owners.get(slot) == owner) {
+                    return slot;
+                }
+            }
+        }
+        return home;
+    }
+
+    private boolean take(int slot, long now) {
+        while (true) {
+            long state = states.get(slot);
+            long last = time(state);
+            long elapsed = now > last ? now - last : 0;
+            long tokens = Math.min(capacity, tokens(state) + elapsed * refillPerMilli);
+            if (tokens < MILLI) {
+                return false;
+            }
+            if (states.compareAndSet(slot, state, pack(Math.max(now, last), tokens - MILLI))) {
+                return true;
+            }
+        }
+    }
+
+    private static long pack(long timeMillis, long tokens) {
+        return (timeMillis << TOKEN_BITS) | tokens;
+    }
+
+    private static long time(long state) {
+        return state >>> TOKEN_BITS;
+    }
+
+    private static long tokens(long state) {
+        return state & TOKEN_MASK;
+    }
+}
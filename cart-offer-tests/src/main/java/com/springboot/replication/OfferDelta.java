@@ -0,0 +1,73 @@
+package com.springboot.replication;
+
+import com.springboot.offer.OfferType;
+import com.springboot.offer.ScheduledOffer;
+
+/**
+ * One offer registration as shipped to replication peers. Applying a delta is
+ * idempotent, so a peer may receive the same one more than once.
+ */
+public final class OfferDelta {
+
+    private final long version;
+    private final int restaurantId;
+    private final OfferType type;
+    private final long discount;
+    private final String[] segments;
+    private final long startMillis;
+    private final long endMillis;
+    private final long publishedAtMillis;
+
+    public OfferDelta(long version, int restaurantId, OfferType type, long discount, String[] segments,
+                      long publishedAtMillis) {
+        this(version, restaurantId, type, discount, segments, ScheduledOffer.NO_START, ScheduledOffer.NO_END,
+                publishedAtMillis);
+    }
+
+    public OfferDelta(long version, int restaurantId, OfferType type, long discount, String[] segments,
+                      long startMillis, long endMillis, long publishedAtMillis) {
+        this.version = version;
+        this.restaurantId = restaurantId;
+        this.type = type;
+        this.discount = discount;
+        this.segments = segments;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+        this.publishedAtMillis = publishedAtMillis;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getRestaurantId() {
+        return restaurantId;
+    }
+
+    public OfferType getType() {
+        return type;
+    }
+
+    public long getDiscount() {
+        return discount;
+    }
+
+    public String[] getSegments() {
+        return segments;
+    }
+
+    /** Start of the validity window, or {@link ScheduledOffer#NO_START}. */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /** End of the validity window, or {@link ScheduledOffer#NO_END}. */
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    /** Wall-clock time the origin node published the offer, or 0 for snapshot entries. */
+    public long getPublishedAtMillis() {
+        return publishedAtMillis;
+    }
+}
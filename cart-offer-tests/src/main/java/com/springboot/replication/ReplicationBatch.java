@@ -0,0 +1,58 @@
+package com.springboot.replication;
+
+import java.util.List;
+
+/**
+ * A page of a node's change stream, as served to a pulling peer.
+ *
+ * <p>If {@link #isSnapshot()} is set, the deltas restate every offer the node
+ * had published as of {@link #getVersion()}, and the peer must resume from
+ * that version rather than from its own cursor. A snapshot spans several
+ * batches while {@link #getCursor()} is not 0.
+ */
+public final class ReplicationBatch {
+
+    private final long epoch;
+    private final long version;
+    private final long latest;
+    private final boolean snapshot;
+    private final long cursor;
+    private final List<OfferDelta> deltas;
+
+    public ReplicationBatch(long epoch, long version, long latest, boolean snapshot, long cursor,
+                            List<OfferDelta> deltas) {
+        this.epoch = epoch;
+        this.version = version;
+        this.latest = latest;
+        this.snapshot = snapshot;
+        this.cursor = cursor;
+        this.deltas = deltas;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /** Version the peer has caught up to once it applied this batch. */
+    public long getVersion() {
+        return version;
+    }
+
+    /** Newest version on the serving node when the batch was built. */
+    public long getLatest() {
+        return latest;
+    }
+
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    /** Where the next page of a snapshot starts, or 0 if this is its last page. */
+    public long getCursor() {
+        return cursor;
+    }
+
+    public List<OfferDelta> getDeltas() {
+        return deltas;
+    }
+}
@@ -0,0 +1,200 @@
+package com.springboot.replication;
+
+import com.springboot.offer.OfferStore;
+import com.springboot.security.Role;
+import com.springboot.security.RoleAuthorizationFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pulls offer deltas from every peer in {@code replication.peers} and applies
+ * them to the local store.
+ *
+ * <p>Nodes form a full mesh and only serve offers registered on themselves,
+ * so deltas never echo back. Each peer's cursor (epoch and version) only
+ * advances after the deltas up to it are visible locally; after a restart,
+ * or when a peer's log no longer covers the cursor, the peer answers with a
+ * snapshot, page by page, and the cursor restarts from it.
+ *
+ * <p>The change stream is an {@code ADMIN} endpoint, so requests carry that
+ * {@code user_role}.
+ */
+@Component
+public class ReplicationClient implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicationClient.class);
+
+    private final OfferStore offerStore;
+    private final List<Peer> peers = new ArrayList<>();
+    private final int batchSize;
+    private final int timeoutMillis;
+    private final ScheduledExecutorService poller;
+
+    public ReplicationClient(OfferStore offerStore,
+                             @Value("${replication.peers:}") String peers,
+                             @Value("${replication.poll-interval-ms:100}") long pollIntervalMillis,
+                             @Value("${replication.batch-size:1000}") int batchSize,
+                             @Value("${replication.timeout-ms:2000}") int timeoutMillis) {
+        this.offerStore = offerStore;
+        this.batchSize = batchSize;
+        this.timeoutMillis = timeoutMillis;
+        for (String peer : peers.split(",")) {
+            if (!peer.trim().isEmpty()) {
+                this.peers.add(new Peer(peer.trim()));
+            }
+        }
+        if (this.peers.isEmpty()) {
+            this.poller = null;
+            return;
+        }
+        this.poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "offer-replication");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.poller.scheduleWithFixedDelay(this::pollAll, 0, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Per-peer cursor and lag, for the metrics endpoint.
+     */
+    public Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        for (Peer peer : peers) {
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("version", peer.version);
+            metrics.put("lag_versions", Math.max(0, peer.latest - peer.version));
+            metrics.put("last_lag_millis", peer.lastLagMillis);
+            metrics.put("max_lag_millis", peer.maxLagMillis);
+            metrics.put("snapshots", peer.snapshots);
+            metrics.put("applied", peer.applied);
+            metrics.put("errors", peer.errors);
+            metrics.put("last_success_millis_ago",
+                    peer.lastSuccessMillis == 0 ? -1 : System.currentTimeMillis() - peer.lastSuccessMillis);
+            summary.put(peer.baseUrl, metrics);
+        }
+        return summary;
+    }
+
+    List<Peer> getPeers() {
+        return Collections.unmodifiableList(peers);
+    }
+
+    @Override
+    @PreDestroy
+    public void close() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+
+    private void pollAll() {
+        for (Peer peer : peers) {
+            try {
+                // Keep pulling while the peer has more than one page for us.
+                boolean more;
+                do {
+                    more = poll(peer);
+                } while (more && !Thread.currentThread().isInterrupted());
+            } catch (Exception e) {
+                peer.errors++;
+                log.debug("Could not replicate from {}", peer.baseUrl, e);
+            }
+        }
+    }
+
+    /**
+     * Pulls and applies one page; returns true if the peer has more.
+     */
+    private boolean poll(Peer peer) throws IOException {
+        ReplicationBatch batch = ReplicationCodec.read(fetch(peer));
+        List<CompletableFuture<Boolean>> applied = new ArrayList<>(batch.getDeltas().size());
+        for (OfferDelta delta : batch.getDeltas()) {
+            applied.add(offerStore.submitReplica(delta.getRestaurantId(), delta.getType(), delta.getDiscount(),
+                    Arrays.asList(delta.getSegments()), delta.getStartMillis(), delta.getEndMillis()));
+        }
+        CompletableFuture.allOf(applied.toArray(new CompletableFuture<?>[0])).join();
+        long now = System.currentTimeMillis();
+        for (OfferDelta delta : batch.getDeltas()) {
+            if (delta.getPublishedAtMillis() > 0) {
+                long lag = now - delta.getPublishedAtMillis();
+                peer.lastLagMillis = lag;
+                peer.maxLagMillis = Math.max(peer.maxLagMillis, lag);
+            }
+        }
+        if (batch.isSnapshot() && peer.snapshotCursor == 0) {
+            peer.snapshots++;
+        }
+        peer.applied += batch.getDeltas().size();
+        peer.epoch = batch.getEpoch();
+        peer.version = batch.getVersion();
+        peer.latest = batch.getLatest();
+        peer.snapshotCursor = batch.getCursor();
+        peer.lastSuccessMillis = now;
+        return batch.isSnapshot() ? batch.getCursor() != 0 : batch.getVersion() < batch.getLatest();
+    }
+
+    private byte[] fetch(Peer peer) throws IOException {
+        URL url = new URL(peer.baseUrl + "/internal/replication/changes?epoch=" + peer.epoch
+                + "&since=" + peer.version + "&cursor=" + peer.snapshotCursor + "&limit=" + batchSize);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestProperty(RoleAuthorizationFilter.USER_ROLE_HEADER, Role.ADMIN.getHeaderValue());
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            connection.disconnect();
+            throw new IOException("HTTP " + status + " from " + url);
+        }
+        // Reading the body to the end lets the connection be reused for the next poll.
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            for (int n; (n = in.read(chunk)) > 0; ) {
+                body.write(chunk, 0, n);
+            }
+            return body.toByteArray();
+        }
+    }
+
+    /**
+     * Replication state for one peer. Written only by the poller thread.
+     */
+    static final class Peer {
+        final String baseUrl;
+        volatile long epoch;
+        volatile long version;
+        volatile long latest;
+        /** Next page of the snapshot being pulled, or 0 outside one. */
+        volatile long snapshotCursor;
+        volatile long lastLagMillis;
+        volatile long maxLagMillis;
+        volatile long snapshots;
+        volatile long applied;
+        volatile long errors;
+        volatile long lastSuccessMillis;
+
+        Peer(String baseUrl) {
+            this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        }
+    }
+}
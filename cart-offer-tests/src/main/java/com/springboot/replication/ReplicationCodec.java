@@ -0,0 +1,165 @@
+package com.springboot.replication;
+
+import com.springboot.json.JsonReader;
+import com.springboot.json.JsonSyntaxException;
+import com.springboot.json.JsonWriter;
+import com.springboot.offer.OfferType;
+import com.springboot.offer.ScheduledOffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JSON encoding of {@link ReplicationBatch}es:
+ * {@code {"epoch","version","latest","snapshot","cursor","deltas":[{"version","restaurant_id",
+ * "offer_type","discount","segments","start_time","end_time","published_at"}]}}.
+ *
+ * <p>{@code start_time} and {@code end_time} are only written for offers with
+ * a validity window.
+ */
+public final class ReplicationCodec {
+
+    private static final byte[][] BATCH_FIELDS = JsonReader.names("epoch", "version", "latest", "snapshot", "deltas",
+            "cursor");
+    private static final byte[][] DELTA_FIELDS = JsonReader.names(
+            "version", "restaurant_id", "offer_type", "discount", "segments", "published_at",
+            "start_time", "end_time");
+
+    private static final byte[] EPOCH = JsonWriter.encodeName("epoch");
+    private static final byte[] VERSION = JsonWriter.encodeName("version");
+    private static final byte[] LATEST = JsonWriter.encodeName("latest");
+    private static final byte[] SNAPSHOT = JsonWriter.encodeName("snapshot");
+    private static final byte[] CURSOR = JsonWriter.encodeName("cursor");
+    private static final byte[] DELTAS = JsonWriter.encodeName("deltas");
+    private static final byte[] RESTAURANT_ID = JsonWriter.encodeName("restaurant_id");
+    private static final byte[] OFFER_TYPE = JsonWriter.encodeName("offer_type");
+    private static final byte[] DISCOUNT = JsonWriter.encodeName("discount");
+    private static final byte[] SEGMENTS = JsonWriter.encodeName("segments");
+    private static final byte[] PUBLISHED_AT = JsonWriter.encodeName("published_at");
+    private static final byte[] START_TIME = JsonWriter.encodeName("start_time");
+    private static final byte[] END_TIME = JsonWriter.encodeName("end_time");
+
+    private ReplicationCodec() {
+    }
+
+    public static byte[] write(ReplicationBatch batch) {
+        JsonWriter writer = new JsonWriter(256 + batch.getDeltas().size() * 96);
+        writer.beginObject()
+                .name(EPOCH).value(batch.getEpoch())
+                .name(VERSION).value(batch.getVersion())
+                .name(LATEST).value(batch.getLatest())
+                .name(SNAPSHOT).value(batch.isSnapshot())
+                .name(CURSOR).value(batch.getCursor())
+                .name(DELTAS).beginArray();
+        for (OfferDelta delta : batch.getDeltas()) {
+            writer.beginObject()
+                    .name(VERSION).value(delta.getVersion())
+                    .name(RESTAURANT_ID).value(delta.getRestaurantId())
+                    .name(OFFER_TYPE).value(delta.getType().getTypeName())
+                    .name(DISCOUNT).value(delta.getDiscount())
+                    .name(SEGMENTS).beginArray();
+            for (String segment : delta.getSegments()) {
+                writer.value(segment);
+            }
+            writer.endArray();
+            if (ScheduledOffer.isWindowed(delta.getStartMillis(), delta.getEndMillis())) {
+                writer.name(START_TIME).value(delta.getStartMillis())
+                        .name(END_TIME).value(delta.getEndMillis());
+            }
+            writer.name(PUBLISHED_AT).value(delta.getPublishedAtMillis())
+                    .endObject();
+        }
+        return writer.endArray().endObject().toByteArray();
+    }
+
+    public static ReplicationBatch read(byte[] body) throws JsonSyntaxException {
+        JsonReader reader = new JsonReader().reset(body);
+        long epoch = 0;
+        long version = 0;
+        long latest = 0;
+        boolean snapshot = false;
+        long cursor = 0;
+        List<OfferDelta> deltas = new ArrayList<>();
+        reader.beginObject();
+        for (int field; (field = reader.nextField(BATCH_FIELDS)) != JsonReader.END; ) {
+            switch (field) {
+                case 0:
+                    epoch = reader.readLong();
+                    break;
+                case 1:
+                    version = reader.readLong();
+                    break;
+                case 2:
+                    latest = reader.readLong();
+                    break;
+                case 3:
+                    snapshot = reader.readBoolean();
+                    break;
+                case 4:
+                    if (reader.beginArrayOrNull()) {
+                        while (reader.hasNext()) {
+                            deltas.add(readDelta(reader));
+                        }
+                    }
+                    break;
+                case 5:
+                    cursor = reader.readLong();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        return new ReplicationBatch(epoch, version, latest, snapshot, cursor, deltas);
+    }
+
+    private static OfferDelta readDelta(JsonReader reader) throws JsonSyntaxException {
+        long version = 0;
+        int restaurantId = 0;
+        OfferType type = null;
+        long discount = 0;
+        List<String> segments = new ArrayList<>();
+        long publishedAt = 0;
+        long startMillis = ScheduledOffer.NO_START;
+        long endMillis = ScheduledOffer.NO_END;
+        reader.beginObject();
+        for (int field; (field = reader.nextField(DELTA_FIELDS)) != JsonReader.END; ) {
+            switch (field) {
+                case 0:
+                    version = reader.readLong();
+                    break;
+                case 1:
+                    restaurantId = reader.readInt();
+                    break;
+                case 2:
+                    type = OfferType.fromName(reader.readString());
+                    break;
+                case 3:
+                    discount = reader.readLong();
+                    break;
+                case 4:
+                    if (reader.beginArrayOrNull()) {
+                        while (reader.hasNext()) {
+                            segments.add(reader.readString());
+                        }
+                    }
+                    break;
+                case 5:
+                    publishedAt = reader.readLong();
+                    break;
+                case 6:
+                    startMillis = reader.readLong();
+                    break;
+                case 7:
+                    endMillis = reader.readLong();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        if (type == null) {
+            throw new JsonSyntaxException("Delta " + version + " has no known offer_type", 0);
+        }
+        return new OfferDelta(version, restaurantId, type, discount, segments.toArray(new String[0]),
+                startMillis, endMillis, publishedAt);
+    }
+}
@@ -0,0 +1,66 @@
+package com.springboot.replication;
+
+import com.springboot.offer.OfferListener;
+import com.springboot.offer.OfferType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Versioned change stream of the offers registered on this node, kept in a
+ * bounded ring for peers to pull from.
+ *
+ * <p>Versions start at 1 and increase by one per offer. A peer that falls
+ * further behind than the ring holds, or that last saw a previous
+ * incarnation of this node (a different {@link #getEpoch() epoch}), has to
+ * catch up from a snapshot first.
+ */
+@Component
+public class ReplicationLog implements OfferListener {
+
+    private final long epoch = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    private final OfferDelta[] ring;
+    private long lastVersion;
+
+    public ReplicationLog(@Value("${replication.log-capacity:100000}") int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("replication.log-capacity must be positive: " + capacity);
+        }
+        this.ring = new OfferDelta[capacity];
+    }
+
+    @Override
+    public synchronized void published(int restaurantId, OfferType type, long discount, String[] segments,
+                                       long startMillis, long endMillis) {
+        long version = ++lastVersion;
+        ring[(int) (version % ring.length)] = new OfferDelta(version, restaurantId, type, discount, segments,
+                startMillis, endMillis, System.currentTimeMillis());
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public synchronized long getLastVersion() {
+        return lastVersion;
+    }
+
+    /**
+     * Returns up to {@code limit} deltas following {@code version}, oldest
+     * first, or null if some of them are no longer retained.
+     */
+    public synchronized List<OfferDelta> since(long version, int limit) {
+        if (version < 0 || version > lastVersion || lastVersion - version > ring.length) {
+            return null;
+        }
+        int count = (int) Math.min(limit, lastVersion - version);
+        List<OfferDelta> deltas = new ArrayList<>(count);
+        for (long v = version + 1; v <= version + count; v++) {
+            deltas.add(ring[(int) (v % ring.length)]);
+        }
+        return deltas;
+    }
+}
@@ -0,0 +1,119 @@
+package com.springboot.replication;
+
+import com.springboot.offer.OfferStore;
+import com.springboot.offer.OfferType;
+import com.springboot.offer.ScheduledOffer;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Serves this node's change stream to pulling peers: the log tail when the
+ * peer's cursor is still covered, otherwise a snapshot of the offer store,
+ * one page at a time.
+ */
+@Component
+public class ReplicationSource {
+
+    /**
+     * Set in snapshot cursors that continue with the scheduled offers; the low
+     * 32 bits are the restaurant to continue from. Cursors below it are
+     * {@link OfferStore#forEachEntry(long, int, java.util.function.Consumer) entry positions}.
+     */
+    static final long SCHEDULED_PHASE = 1L << 32;
+
+    private static final Comparator<ScheduledOffer> BY_RESTAURANT =
+            Comparator.comparingInt(ScheduledOffer::getRestaurantId);
+
+    private final OfferStore offerStore;
+    private final ReplicationLog log;
+
+    public ReplicationSource(OfferStore offerStore, ReplicationLog log) {
+        this.offerStore = offerStore;
+        this.log = log;
+    }
+
+    /**
+     * Returns the deltas after {@code since} for a peer that last saw
+     * {@code epoch}, or a snapshot page if that is no longer possible. A peer
+     * part way through a snapshot passes the snapshot's version as
+     * {@code since} and the page's {@link ReplicationBatch#getCursor() cursor}.
+     */
+    public ReplicationBatch changes(long epoch, long since, long cursor, int limit) {
+        if (epoch == log.getEpoch()) {
+            if (cursor > 0) {
+                return snapshot(since, cursor, limit);
+            }
+            List<OfferDelta> deltas = log.since(since, limit);
+            if (deltas != null) {
+                return new ReplicationBatch(epoch, since + deltas.size(), log.getLastVersion(), false, 0, deltas);
+            }
+        }
+        return snapshot(log.getLastVersion(), 0, limit);
+    }
+
+    /**
+     * Restates every published best offer, without the scheduled offers folded
+     * into it, as deltas, followed by every scheduled offer that has not
+     * expired with its window. The first page reads the version: everything up
+     * to it is already published, and anything newer that slips into a later
+     * page is sent again with the tail, which is harmless because
+     * registrations are idempotent.
+     *
+     * <p>Entries are paged by index chunk and scheduled offers by restaurant,
+     * so a page may run over {@code limit} by one chunk or one restaurant's
+     * offers. Both keep their place however the store changes between pages.
+     */
+    private ReplicationBatch snapshot(long version, long cursor, int limit) {
+        List<OfferDelta> deltas = new ArrayList<>();
+        long next = cursor;
+        if (cursor < SCHEDULED_PHASE) {
+            next = offerStore.forEachEntry(cursor, limit, entry -> {
+                String[] segment = {offerStore.getSegments().nameOf(entry.getSegmentId())};
+                if (entry.getBaseFlatDiscount() > 0) {
+                    deltas.add(new OfferDelta(version, entry.getRestaurantId(), OfferType.FLATX,
+                            entry.getBaseFlatDiscount(), segment, 0));
+                }
+                if (entry.getBasePercentDiscount() > 0) {
+                    deltas.add(new OfferDelta(version, entry.getRestaurantId(), OfferType.FLATX_PERCENT,
+                            entry.getBasePercentDiscount(), segment, 0));
+                }
+            });
+            if (next >= 0) {
+                return new ReplicationBatch(log.getEpoch(), version, version, true, next, deltas);
+            }
+            next = SCHEDULED_PHASE;
+        }
+        next = scheduled((int) (next - SCHEDULED_PHASE), limit - deltas.size(), deltas, version);
+        return new ReplicationBatch(log.getEpoch(), version, version, true, next, deltas);
+    }
+
+    /**
+     * Adds the scheduled offers of whole restaurants, from {@code restaurantId}
+     * up, until at least {@code limit} were added.
+     *
+     * @return the cursor to continue from, or 0 after the last restaurant
+     */
+    private long scheduled(int restaurantId, int limit, List<OfferDelta> deltas, long version) {
+        List<ScheduledOffer> offers = new ArrayList<>();
+        offerStore.forEachScheduled(offer -> {
+            if (offer.getRestaurantId() >= restaurantId) {
+                offers.add(offer);
+            }
+        });
+        offers.sort(BY_RESTAURANT);
+        int added = 0;
+        for (int i = 0; i < offers.size(); i++) {
+            ScheduledOffer offer = offers.get(i);
+            if (i > 0 && added >= limit && offer.getRestaurantId() != offers.get(i - 1).getRestaurantId()) {
+                return SCHEDULED_PHASE + offer.getRestaurantId();
+            }
+            deltas.add(new OfferDelta(version, offer.getRestaurantId(), offer.getType(), offer.getDiscount(),
+                    offer.getSegments(), offer.getStartMillis(), offer.getEndMillis(), 0));
+            added++;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,32 @@
+package com.springboot.security;
+
+/**
+ * Endpoints covered by role-based authorization. Each one gets its own
+ * {@link RoleAuthorizationFilter} instance, mapped to the endpoint's URL
+ * pattern, so the endpoint never has to be derived from the request path.
+ */
+public enum Endpoint {
+    ADD_OFFER("POST", "/api/v1/offer"),
+    READ_OFFERS("GET", "/api/v1/offer/*"),
+    APPLY_OFFER("POST", "/api/v1/cart/apply_offer"),
+    APPLY_OFFER_BATCH("POST", "/api/v1/cart/apply_offer/batch"),
+    REPLICATION_CHANGES("GET", "/internal/replication/changes"),
+    /** {@code /internal/metrics} and every section under it. */
+    READ_METRICS("GET", "/internal/metrics/*");
+
+    private final String method;
+    private final String urlPattern;
+
+    Endpoint(String method, String urlPattern) {
+        this.method = method;
+        this.urlPattern = urlPattern;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUrlPattern() {
+        return urlPattern;
+    }
+}
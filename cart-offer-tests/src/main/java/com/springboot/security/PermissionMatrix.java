@@ -0,0 +1,53 @@
+package com.springboot.security;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Immutable role x endpoint permission table, built once at startup. Each
+ * role's permissions are a bit mask indexed by {@link Endpoint#ordinal()}.
+ */
+public final class PermissionMatrix {
+
+    private final long[] masks;
+
+    private PermissionMatrix(long[] masks) {
+        this.masks = masks;
+    }
+
+    /**
+     * Default permissions: admins may do everything, customers may read and
+     * apply offers, guests may only read offers.
+     */
+    public static PermissionMatrix defaults() {
+        return new Builder()
+                .grant(Role.ADMIN, EnumSet.allOf(Endpoint.class))
+                .grant(Role.CUSTOMER, EnumSet.of(Endpoint.READ_OFFERS, Endpoint.APPLY_OFFER, Endpoint.APPLY_OFFER_BATCH))
+                .grant(Role.GUEST, EnumSet.of(Endpoint.READ_OFFERS))
+                .build();
+    }
+
+    public boolean isAllowed(Role role, Endpoint endpoint) {
+        return (masks[role.ordinal()] & (1L << endpoint.ordinal())) != 0;
+    }
+
+    public static class Builder {
+        private final long[] masks = new long[Role.values().length];
+
+        /**
+         * Replaces the role's permissions with the given endpoints.
+         */
+        public Builder grant(Role role, Set<Endpoint> endpoints) {
+            long mask = 0;
+            for (Endpoint endpoint : endpoints) {
+                mask |= 1L << endpoint.ordinal();
+            }
+            masks[role.ordinal()] = mask;
+            return this;
+        }
+
+        public PermissionMatrix build() {
+            return new PermissionMatrix(masks.clone());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.springboot.security;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Roles understood in the {@code user_role} header.
+ */
+public enum Role {
+    ADMIN("admin"),
+    CUSTOMER("customer"),
+    GUEST("guest");
+
+    private static final Map<String, Role> BY_HEADER = new HashMap<>();
+
+    static {
+        for (Role role : values()) {
+            BY_HEADER.put(role.headerValue, role);
+        }
+    }
+
+    private final String headerValue;
+
+    Role(String headerValue) {
+        this.headerValue = headerValue;
+    }
+
+    /**
+     * Returns the role for a {@code user_role} header value, or null if the
+     * value isn't a known role.
+     */
+    public static Role fromHeader(String headerValue) {
+        return headerValue == null ? null : BY_HEADER.get(headerValue);
+    }
+
+    public String getHeaderValue() {
+        return headerValue;
+    }
+}
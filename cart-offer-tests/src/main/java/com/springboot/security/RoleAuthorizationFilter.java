@@ -0,0 +1,63 @@
+package com.springboot.security;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Checks the {@code user_role} header against the {@link PermissionMatrix} for
+ * one endpoint: 401 for an unknown role, 403 for a role without permission.
+ * Requests without the header are treated as the configured default role,
+ * or get 401 if there is none.
+ */
+public class RoleAuthorizationFilter extends OncePerRequestFilter {
+
+    public static final String USER_ROLE_HEADER = "user_role";
+
+    private static final byte[] UNAUTHORIZED =
+            "{\"response_msg\":\"unauthorized\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FORBIDDEN =
+            "{\"response_msg\":\"forbidden\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final PermissionMatrix permissions;
+    private final Endpoint endpoint;
+    private final Role defaultRole;
+
+    public RoleAuthorizationFilter(PermissionMatrix permissions, Endpoint endpoint, Role defaultRole) {
+        this.permissions = permissions;
+        this.endpoint = endpoint;
+        this.defaultRole = defaultRole;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!endpoint.getMethod().equals(request.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        String header = request.getHeader(USER_ROLE_HEADER);
+        Role role = header == null ? defaultRole : Role.fromHeader(header);
+        if (role == null) {
+            reject(response, HttpStatus.UNAUTHORIZED, UNAUTHORIZED);
+        } else if (!permissions.isAllowed(role, endpoint)) {
+            reject(response, HttpStatus.FORBIDDEN, FORBIDDEN);
+        } else {
+            chain.doFilter(request, response);
+        }
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, byte[] body) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+}
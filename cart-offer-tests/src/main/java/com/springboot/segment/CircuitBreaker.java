@@ -0,0 +1,134 @@
+package com.springboot.segment;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free circuit breaker for a single dependency.
+ *
+ * <p>The breaker opens after a run of consecutive failures. While open every
+ * call is refused. Once the open period has passed, exactly one caller is let
+ * through as a probe (half-open): its success closes the breaker, its failure
+ * opens it for another period. The state and the time it was entered are
+ * packed into one long, so every transition is a single CAS.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final int STATE_BITS = 2;
+    private static final long STATE_MASK = (1L << STATE_BITS) - 1;
+    private static final State[] STATES = State.values();
+
+    private final AtomicLong state;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final LongAdder trips = new LongAdder();
+    private final LongAdder shortCircuited = new LongAdder();
+    private final int failureThreshold;
+    private final long openMillis;
+    private final LongSupplier clock;
+    private final long origin;
+
+    /**
+     * @param failureThreshold consecutive failures that open the breaker
+     * @param openMillis       how long the breaker stays open before a probe
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this(failureThreshold, openMillis, System::nanoTime);
+    }
+
+    CircuitBreaker(int failureThreshold, long openMillis, LongSupplier nanoClock) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("failureThreshold must be positive");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.clock = nanoClock;
+        this.origin = nanoClock.getAsLong();
+        this.state = new AtomicLong(pack(State.CLOSED, 0));
+    }
+
+    /**
+     * Returns true if a call may go out. While the breaker is open this is
+     * false, except for the one caller that becomes the half-open probe.
+     */
+    public boolean tryAcquire() {
+        long current = state.get();
+        if (stateOf(current) == State.CLOSED) {
+            return true;
+        }
+        long now = nowMillis();
+        // A probe that never reported back does not keep the breaker half-open forever.
+        if (now - sinceOf(current) >= openMillis && state.compareAndSet(current, pack(State.HALF_OPEN, now))) {
+            return true;
+        }
+        shortCircuited.increment();
+        return false;
+    }
+
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        long current = state.get();
+        if (stateOf(current) == State.HALF_OPEN) {
+            state.compareAndSet(current, pack(State.CLOSED, 0));
+        }
+    }
+
+    public void onFailure() {
+        long current = state.get();
+        switch (stateOf(current)) {
+            case HALF_OPEN:
+                open(current);
+                break;
+            case CLOSED:
+                if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+                    open(current);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void open(long current) {
+        if (state.compareAndSet(current, pack(State.OPEN, nowMillis()))) {
+            consecutiveFailures.set(0);
+            trips.increment();
+        }
+    }
+
+    public State getState() {
+        return stateOf(state.get());
+    }
+
+    /** Number of times the breaker opened. */
+    public long getTrips() {
+        return trips.sum();
+    }
+
+    /** Calls refused while the breaker was open. */
+    public long getShortCircuited() {
+        return shortCircuited.sum();
+    }
+
+    private long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(clock.getAsLong() - origin);
+    }
+
+    private static long pack(State state, long sinceMillis) {
+        return (sinceMillis << STATE_BITS) | state.ordinal();
+    }
+
+    private static State stateOf(long packed) {
+        return STATES[(int) (packed & STATE_MASK)];
+    }
+
+    private static long sinceOf(long packed) {
+        return packed >>> STATE_BITS;
+    }
+}
@@ -0,0 +1,181 @@
+package com.springboot.segment;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded per-user cache of resolved segments.
+ *
+ * <p>Entries expire after a fixed TTL. A null segment ("no segment" or an
+ * invalid upstream response) is cached as well, with its own, usually
+ * shorter, TTL. A failed load says nothing about the user and is not cached:
+ * the callers that shared it get the failure, and the next lookup loads
+ * again. Concurrent misses for the same user share a single upstream load. Loads are asynchronous; a hit returns an already completed
+ * future without allocating.
+ */
+public class SegmentCache {
+
+    private final IntFunction<CompletableFuture<String>> loader;
+    private final int maxEntries;
+    private final int lowWaterEntries;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final LongSupplier clock;
+
+    private final ConcurrentHashMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public SegmentCache(IntFunction<CompletableFuture<String>> loader, int maxEntries, long ttlMillis, long negativeTtlMillis) {
+        this(loader, maxEntries, ttlMillis, negativeTtlMillis, System::nanoTime);
+    }
+
+    SegmentCache(IntFunction<CompletableFuture<String>> loader, int maxEntries, long ttlMillis, long negativeTtlMillis,
+                 LongSupplier clock) {
+        this.loader = loader;
+        this.maxEntries = maxEntries;
+        this.lowWaterEntries = maxEntries - Math.max(1, maxEntries / 10);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis);
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the cached segment for the user, loading it if absent or expired.
+     * Callers that miss while a load for the same user is in flight share it.
+     */
+    public CompletableFuture<String> getAsync(int userId) {
+        long now = clock.getAsLong();
+        Entry entry = entries.get(userId);
+        if (entry != null && entry.isFresh(now)) {
+            hits.increment();
+            return entry.future;
+        }
+        Entry created = new Entry();
+        entry = entries.compute(userId,
+                (k, existing) -> existing != null && (existing.isPending() || existing.isFresh(now))
+                        ? existing : created);
+        if (entry != created) {
+            hits.increment();
+        } else {
+            misses.increment();
+            load(userId, created);
+            if (entries.size() > maxEntries) {
+                evict();
+            }
+        }
+        return entry.future;
+    }
+
+    /**
+     * Blocking variant of {@link #getAsync(int)}; a failed load is rethrown
+     * as is if it is unchecked.
+     */
+    public String get(int userId) {
+        try {
+            return getAsync(userId).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public void invalidate(int userId) {
+        entries.remove(userId);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Lookups answered without a new upstream load, including those that
+     * joined a load already in flight.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Lookups that started an upstream load.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private void load(int userId, Entry entry) {
+        CompletableFuture<String> loading;
+        try {
+            loading = loader.apply(userId);
+        } catch (RuntimeException e) {
+            loading = CompletableFuture.failedFuture(e);
+        }
+        loading.whenComplete((segment, error) -> {
+            if (error != null) {
+                // Removed before completing, so no later lookup can join the failed load.
+                entries.remove(userId, entry);
+                entry.fail(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                return;
+            }
+            long ttl = segment == null ? negativeTtlNanos : ttlNanos;
+            entry.complete(segment, clock.getAsLong() + ttl);
+        });
+    }
+
+    /**
+     * Drops expired entries first and then, if the cache is still above 90% of
+     * its bound, arbitrary completed ones. Stopping below the bound leaves room
+     * for a tenth of it in new entries, so at capacity the scan runs once per
+     * that many misses rather than on every miss. Only one thread evicts at a
+     * time.
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = clock.getAsLong();
+            entries.values().removeIf(e -> !e.isPending() && !e.isFresh(now));
+            Iterator<Entry> it = entries.values().iterator();
+            while (entries.size() > lowWaterEntries && it.hasNext()) {
+                if (!it.next().isPending()) {
+                    it.remove();
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static final class Entry {
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+        private volatile long expiresAt;
+
+        void complete(String value, long expiresAt) {
+            this.expiresAt = expiresAt;
+            future.complete(value);
+        }
+
+        void fail(Throwable error) {
+            future.completeExceptionally(error);
+        }
+
+        boolean isPending() {
+            return !future.isDone();
+        }
+
+        boolean isFresh(long now) {
+            return future.isDone() && !future.isCompletedExceptionally() && expiresAt - now > 0;
+        }
+    }
+}
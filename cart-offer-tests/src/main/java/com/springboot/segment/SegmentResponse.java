@@ -0,0 +1,19 @@
+package com.springboot.segment;
+
+public class SegmentResponse {
+    private String segment;
+
+    public SegmentResponse() {}
+
+    public SegmentResponse(String segment) {
+        this.segment = segment;
+    }
+
+    public String getSegment() {
+        return segment;
+    }
+
+    public void setSegment(String segment) {
+        this.segment = segment;
+    }
+}
@@ -0,0 +1,18 @@
+package com.springboot.segment;
+
+/**
+ * The user segment service gave no answer: the call timed out, failed, got a
+ * 5xx, or was refused by the open {@link CircuitBreaker}. Unlike a null
+ * segment this says nothing about the user, so it is never cached.
+ *
+ * <p>Thrown often while the service is down, so one shared instance without
+ * a stack trace is used.
+ */
+public final class SegmentUnavailableException extends RuntimeException {
+
+    static final SegmentUnavailableException INSTANCE = new SegmentUnavailableException();
+
+    private SegmentUnavailableException() {
+        super("User segment service unavailable", null, false, false);
+    }
+}
@@ -0,0 +1,389 @@
+package com.springboot.segment;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.execution.ExecutionMode;
+import com.springboot.metrics.LatencyHistogram;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.util.EntityUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resolves a user's segment from the user segment service, through a
+ * {@link SegmentCache}.
+ *
+ * <p>Upstream calls go out on a non-blocking HTTP client with a pool of
+ * keep-alive connections, so no request thread waits on the segment service.
+ * Each call has a hard deadline. An invalid body resolves to no segment; a
+ * call that times out or fails completes with
+ * {@link SegmentUnavailableException} instead, so the cache does not take it
+ * for the user's answer.
+ *
+ * <p>A call still unanswered after the configured percentile of recent
+ * response times is hedged with a second request, and whichever answers
+ * first wins. Timeouts, transport errors, 5xx responses and invalid bodies
+ * count against a {@link CircuitBreaker}; while it is open calls complete
+ * with {@link SegmentUnavailableException} without reaching the service.
+ *
+ * <p>With {@code execution.mode=virtual} each call instead runs as a plain
+ * blocking request on its own virtual thread, which parks rather than holds
+ * a carrier while it waits.
+ */
+@Component
+public class UserSegmentClient implements AutoCloseable {
+
+    /** Response times needed before the hedge delay is (re)computed. */
+    static final int MIN_HEDGE_SAMPLES = 100;
+
+    private static final CompletableFuture<String> UNAVAILABLE =
+            CompletableFuture.failedFuture(SegmentUnavailableException.INSTANCE);
+
+    private final CloseableHttpAsyncClient httpClient;
+    private final ScheduledThreadPoolExecutor deadlines;
+    private final HttpClient blockingClient;
+    private final ExecutorService fetchers;
+    private final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final String baseUrl;
+    private final long timeoutMillis;
+    private final SegmentCache cache;
+    private final CircuitBreaker breaker;
+    private final double hedgePercentile;
+    private final long minHedgeDelayNanos;
+
+    private volatile LatencyHistogram responseTimes = new LatencyHistogram();
+    private volatile long hedgeDelayNanos = Long.MAX_VALUE;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public UserSegmentClient(@Value("${user.segment.base-url}") String baseUrl,
+                             @Value("${user.segment.timeout-ms:200}") int timeoutMillis,
+                             @Value("${user.segment.max-connections:200}") int maxConnections,
+                             @Value("${user.segment.cache.max-entries:100000}") int maxEntries,
+                             @Value("${user.segment.cache.ttl-ms:60000}") long ttlMillis,
+                             @Value("${user.segment.cache.negative-ttl-ms:5000}") long negativeTtlMillis,
+                             @Value("${user.segment.hedge.percentile:95}") double hedgePercentile,
+                             @Value("${user.segment.hedge.min-delay-ms:5}") long minHedgeDelayMillis,
+                             @Value("${user.segment.breaker.failure-threshold:20}") int breakerFailureThreshold,
+                             @Value("${user.segment.breaker.open-ms:1000}") long breakerOpenMillis,
+                             ExecutionMode executionMode) {
+        this.baseUrl = baseUrl;
+        this.timeoutMillis = timeoutMillis;
+        this.hedgePercentile = hedgePercentile;
+        this.minHedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(minHedgeDelayMillis);
+        this.breaker = new CircuitBreaker(breakerFailureThreshold, breakerOpenMillis);
+        this.httpClient = HttpAsyncClients.custom()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(timeoutMillis)
+                        .setConnectionRequestTimeout(timeoutMillis)
+                        .setSocketTimeout(timeoutMillis)
+                        .build())
+                .build();
+        this.httpClient.start();
+        this.deadlines = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "segment-deadlines");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.deadlines.setRemoveOnCancelPolicy(true);
+        if (hedgePercentile > 0) {
+            this.deadlines.scheduleWithFixedDelay(this::refreshHedgeDelay, 1, 1, TimeUnit.SECONDS);
+        }
+        if (executionMode == ExecutionMode.VIRTUAL) {
+            this.blockingClient = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofMillis(timeoutMillis))
+                    .build();
+            this.fetchers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("segment-fetch-", 0).factory());
+        } else {
+            this.blockingClient = null;
+            this.fetchers = null;
+        }
+        this.cache = new SegmentCache(this::fetchSegment, maxEntries, ttlMillis, negativeTtlMillis);
+    }
+
+    /**
+     * Returns the user's segment, or null if the service has none for the user,
+     * its response is invalid or it is unavailable.
+     */
+    public String getSegment(int userId) {
+        try {
+            return cache.get(userId);
+        } catch (SegmentUnavailableException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #getSegment(int)}, which completes with
+     * {@link SegmentUnavailableException} if the service is unavailable.
+     */
+    public CompletableFuture<String> getSegmentAsync(int userId) {
+        return cache.getAsync(userId);
+    }
+
+    public SegmentCache getCache() {
+        return cache;
+    }
+
+    public CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    /** Calls that went out to the service (short-circuited calls excluded). */
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /** Calls that sent a second, hedged request. */
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    /** Hedged requests that answered before the original one. */
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    /** Calls that timed out or failed on every request they sent. */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /** Current hedge delay, or -1 while hedging is off or still warming up. */
+    public long getHedgeDelayNanos() {
+        long delay = hedgeDelayNanos;
+        return delay == Long.MAX_VALUE ? -1 : delay;
+    }
+
+    CompletableFuture<String> fetchSegment(int userId) {
+        if (!breaker.tryAcquire()) {
+            return UNAVAILABLE;
+        }
+        calls.increment();
+        return new Call(userId).start();
+    }
+
+    /**
+     * Sets the hedge delay from the response times seen since the last
+     * refresh, then starts a new window, so the delay follows the service's
+     * recent behaviour rather than its whole history.
+     */
+    void refreshHedgeDelay() {
+        LatencyHistogram window = responseTimes;
+        if (window.getCount() < MIN_HEDGE_SAMPLES) {
+            return;
+        }
+        responseTimes = new LatencyHistogram();
+        hedgeDelayNanos = Math.max(minHedgeDelayNanos, window.percentile(hedgePercentile));
+    }
+
+    /**
+     * One segment lookup: the original request, at most one hedged request and
+     * the deadline covering both.
+     */
+    private final class Call {
+        private final int userId;
+        private final long start = System.nanoTime();
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private final AtomicInteger outstanding = new AtomicInteger(1);
+        // Claimed by the first outcome, which is recorded before result completes.
+        private final AtomicBoolean settled = new AtomicBoolean();
+        private volatile Future<?> original;
+        private volatile Future<?> hedged;
+
+        Call(int userId) {
+            this.userId = userId;
+        }
+
+        CompletableFuture<String> start() {
+            original = send(false);
+            long hedgeDelay = hedgeDelayNanos;
+            ScheduledFuture<?> hedge = hedgeDelay < TimeUnit.MILLISECONDS.toNanos(timeoutMillis)
+                    ? deadlines.schedule(this::hedge, hedgeDelay, TimeUnit.NANOSECONDS)
+                    : null;
+            // Socket timeouts only bound the gaps between packets; this bounds the whole call.
+            ScheduledFuture<?> deadline = deadlines.schedule(this::fail, timeoutMillis, TimeUnit.MILLISECONDS);
+            result.whenComplete((segment, error) -> {
+                deadline.cancel(false);
+                if (hedge != null) {
+                    hedge.cancel(false);
+                }
+                cancel(original);
+                cancel(hedged);
+            });
+            return result;
+        }
+
+        private void hedge() {
+            if (settled.get()) {
+                return;
+            }
+            outstanding.incrementAndGet();
+            hedges.increment();
+            hedged = send(true);
+            if (result.isDone()) {
+                cancel(hedged);
+            }
+        }
+
+        private Future<?> send(boolean isHedge) {
+            long sentAt = System.nanoTime();
+            CompletableFuture<String> response = new CompletableFuture<>();
+            Future<?> request = fetchers == null ? sendNonBlocking(userId, response) : sendOnVirtualThread(userId, response);
+            response.whenComplete((segment, error) -> {
+                if (error == null) {
+                    responseTimes.record(System.nanoTime() - sentAt);
+                    if (settled.compareAndSet(false, true)) {
+                        breaker.onSuccess();
+                        if (isHedge) {
+                            hedgeWins.increment();
+                        }
+                        result.complete(segment);
+                    }
+                } else if (error instanceof InvalidResponseException) {
+                    // The service answered, just not usefully: no segment, but a failure for the breaker.
+                    if (settled.compareAndSet(false, true)) {
+                        failures.increment();
+                        breaker.onFailure();
+                        result.complete(null);
+                    }
+                } else if (outstanding.decrementAndGet() == 0) {
+                    fail();
+                }
+            });
+            return request;
+        }
+
+        private void fail() {
+            if (settled.compareAndSet(false, true)) {
+                failures.increment();
+                breaker.onFailure();
+                result.completeExceptionally(SegmentUnavailableException.INSTANCE);
+            }
+        }
+
+        private void cancel(Future<?> request) {
+            if (request != null) {
+                request.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Completes {@code response} with the segment (null for none), or
+     * exceptionally if the service failed to give a usable answer.
+     */
+    private Future<HttpResponse> sendNonBlocking(int userId, CompletableFuture<String> response) {
+        HttpGet request = new HttpGet(baseUrl + "/api/v1/user_segment?user_id=" + userId);
+        return httpClient.execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse httpResponse) {
+                try {
+                    int status = httpResponse.getStatusLine().getStatusCode();
+                    byte[] body = httpResponse.getEntity() == null
+                            ? null : EntityUtils.toByteArray(httpResponse.getEntity());
+                    response.complete(parse(status, body));
+                } catch (IOException e) {
+                    response.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                response.completeExceptionally(e);
+            }
+
+            @Override
+            public void cancelled() {
+                response.completeExceptionally(new CancellationException());
+            }
+        });
+    }
+
+    private Future<?> sendOnVirtualThread(int userId, CompletableFuture<String> response) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/user_segment?user_id=" + userId))
+                .timeout(Duration.ofMillis(timeoutMillis))
+                .build();
+        // The request timeout only covers the wait for headers; the call's deadline interrupts a slow body too.
+        return fetchers.submit(() -> {
+            try {
+                java.net.http.HttpResponse<byte[]> httpResponse =
+                        blockingClient.send(request, java.net.http.HttpResponse.BodyHandlers.ofByteArray());
+                response.complete(parse(httpResponse.statusCode(), httpResponse.body()));
+            } catch (IOException | InterruptedException e) {
+                response.completeExceptionally(e);
+            }
+        });
+    }
+
+    /**
+     * Returns the segment from a 200 response, or null for other 2xx-4xx
+     * answers, which mean the service has no segment for the user.
+     *
+     * @throws IOException for a 5xx status
+     * @throws InvalidResponseException for a 200 body that is not a segment response
+     */
+    private String parse(int status, byte[] body) throws IOException {
+        if (status >= HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+            throw new IOException("User segment service answered " + status);
+        }
+        if (status != HttpStatus.SC_OK || body == null) {
+            return null;
+        }
+        SegmentResponse segment;
+        try {
+            segment = mapper.readValue(body, SegmentResponse.class);
+        } catch (JsonProcessingException e) {
+            throw new InvalidResponseException(e);
+        }
+        return segment == null || StringUtils.isBlank(segment.getSegment()) ? null : segment.getSegment();
+    }
+
+    private static final class InvalidResponseException extends IOException {
+        InvalidResponseException(JsonProcessingException cause) {
+            super(cause);
+        }
+    }
+
+    @Override
+    @PreDestroy
+    public void close() throws IOException {
+        deadlines.shutdownNow();
+        if (fetchers != null) {
+            fetchers.shutdownNow();
+            blockingClient.close();
+        }
+        httpClient.close();
+    }
+}
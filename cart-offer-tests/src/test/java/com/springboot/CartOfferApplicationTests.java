@@ -2,6 +2,8 @@ package com.springboot;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.springboot.controller.OfferRequest;
+import com.springboot.load.LoadDriver;
+import com.springboot.load.LoadReport;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -9,6 +11,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockserver.integration.ClientAndServer;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.io.BufferedReader;
@@ -24,7 +27,8 @@ import static org.mockserver.model.HttpRequest.request;
 import static org.mockserver.model.HttpResponse.response;
 
 @RunWith(SpringRunner.class)
-@SpringBootTest
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.DEFINED_PORT)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
 public class CartOfferApplicationTests {
 
     private ClientAndServer mockServer;
@@ -64,6 +68,7 @@ public class CartOfferApplicationTests {
         HttpURLConnection con = (HttpURLConnection) url.openConnection();
         con.setDoOutput(true);
         con.setRequestProperty("Content-Type", "application/json");
+        con.setRequestProperty("user_role", "customer");
         OutputStream os = con.getOutputStream();
         os.write(jsonPayload.getBytes());
         os.flush();
@@ -102,6 +107,7 @@ public class CartOfferApplicationTests {
         HttpURLConnection con = (HttpURLConnection) url.openConnection();
         con.setDoOutput(true);
         con.setRequestProperty("Content-Type", "application/json");
+        con.setRequestProperty("user_role", "admin");
 
         ObjectMapper mapper = new ObjectMapper();
         String postParams = mapper.writeValueAsString(offerRequest);
@@ -150,7 +156,9 @@ public class CartOfferApplicationTests {
     // TC01: Apply FLATX Offer
     @Test
     public void testApplyFlatXOffer_TC01() throws Exception {
-        // Assumes an offer for segment "p1" is already added for restaurant 1.
+        List<String> segments = new ArrayList<>();
+        segments.add("p1");
+        addOffer(new OfferRequest(1, "FLATX", 10, segments));
         String jsonPayload = "{\"cart_value\":200,\"user_id\":1,\"restaurant_id\":1}";
         String response = sendPost("http://localhost:9001/api/v1/cart/apply_offer", jsonPayload);
 
@@ -327,13 +335,16 @@ public class CartOfferApplicationTests {
     @Test
     public void testPerformanceHighTraffic_TC10() throws Exception {
         int numberOfRequests = 50;
-        long startTime = System.currentTimeMillis();
-        for (int i = 0; i < numberOfRequests; i++) {
-            String jsonPayload = "{\"cart_value\":200,\"user_id\":1,\"restaurant_id\":1}";
-            sendPost("http://localhost:9001/api/v1/cart/apply_offer", jsonPayload);
-        }
-        long totalTime = System.currentTimeMillis() - startTime;
+        // Concurrent keep-alive requests; see CartOfferLoadTest for open-model and mixed workloads.
+        LoadReport report = new LoadDriver("http://localhost:9001")
+                .concurrency(4)
+                .requests(numberOfRequests)
+                .run();
+        long totalTime = report.getElapsedMillis();
         System.out.println("Total time for " + numberOfRequests + " requests: " + totalTime + "ms");
+        // Every request must be answered, with 200 or, past user 1's rate limit, 429; TC15 covers the limit itself.
+        Assert.assertEquals(numberOfRequests, report.getTotalRequests());
+        Assert.assertEquals(0, report.getFailed());
         // Example performance criteria: total time should be less than 3000ms.
         Assert.assertTrue(totalTime < 3000);
     }
@@ -419,6 +430,9 @@ public class CartOfferApplicationTests {
     // TC14: User with valid permissions applies an offer
     @Test
     public void testUserWithValidPermissionsApplyOffer_TC14() throws Exception {
+        List<String> segments = new ArrayList<>();
+        segments.add("p1");
+        addOffer(new OfferRequest(1, "FLATX", 10, segments));
         String urlString = "http://localhost:9001/api/v1/cart/apply_offer";
         URL url = new URL(urlString);
         HttpURLConnection con = (HttpURLConnection) url.openConnection();
@@ -460,6 +474,7 @@ public class CartOfferApplicationTests {
             HttpURLConnection con = createConnection("http://localhost:9001/api/v1/cart/apply_offer");
             con.setDoOutput(true);
             con.setRequestProperty("Content-Type", "application/json");
+            con.setRequestProperty("user_role", "customer");
             String jsonPayload = "{\"cart_value\":200,\"user_id\":1,\"restaurant_id\":1}";
             OutputStream os = con.getOutputStream();
             os.write(jsonPayload.getBytes());
@@ -490,6 +505,23 @@ public class CartOfferApplicationTests {
         con.disconnect();
     }
 
+    // A user reads the offers of their own segment.
+    @Test
+    public void testReadOwnOffers() throws Exception {
+        List<String> segments = new ArrayList<>();
+        segments.add("p1");
+        addOffer(new OfferRequest(1, "FLATX", 10, segments));
+        HttpURLConnection con = createConnection("http://localhost:9001/api/v1/offer/1");
+        con.setRequestProperty("user_id", "1");
+        Assert.assertEquals(200, con.getResponseCode());
+        BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
+        List<?> offers = new ObjectMapper().readValue(in, List.class);
+        in.close();
+        con.disconnect();
+        Assert.assertEquals(1, offers.size());
+        Assert.assertEquals(1, ((Map<?, ?>) offers.get(0)).get("restaurantId"));
+    }
+
     // TC17: Unauthorized API Access
     @Test
     public void testUnauthorizedAPIAccess_TC17() throws Exception {
@@ -515,4 +547,45 @@ public class CartOfferApplicationTests {
         Assert.assertEquals(401, responseCode);
         con.disconnect();
     }
+
+    // Each cart of a batch counts as an apply_offer outcome, and the batch is timed.
+    @Test
+    public void testBatchRecordsOutcomesAndLatency() throws Exception {
+        List<String> segments = new ArrayList<>();
+        segments.add("p1");
+        addOffer(new OfferRequest(1, "FLATX", 10, segments));
+        String jsonPayload = "[{\"cart_value\":200,\"user_id\":1,\"restaurant_id\":1},"
+                + "{\"cart_value\":300,\"user_id\":1,\"restaurant_id\":1},"
+                + "{\"cart_value\":200,\"user_id\":1,\"restaurant_id\":99},"
+                + "{\"cart_value\":200,\"user_id\":1,\"restaurant_id\":1,\"simulate_segment_null\":true}]";
+        String response = sendPost("http://localhost:9001/api/v1/cart/apply_offer/batch", jsonPayload);
+        Assert.assertEquals("[{\"cart_value\":190},{\"cart_value\":290},{\"cart_value\":200},{\"cart_value\":200}]",
+                response);
+
+        HttpURLConnection con = createConnection("http://localhost:9001/internal/metrics/apply_offer");
+        con.setRequestProperty("user_role", "admin");
+        Map<String, Map<String, Object>> metrics = new ObjectMapper().readValue(con.getInputStream(), Map.class);
+        con.disconnect();
+        Map<String, Object> outcomes = metrics.get("outcomes");
+        Assert.assertEquals(2, ((Number) outcomes.get("applied")).intValue());
+        Assert.assertEquals(1, ((Number) outcomes.get("no_offer")).intValue());
+        Assert.assertEquals(1, ((Number) outcomes.get("no_segment")).intValue());
+        Map<String, Object> batch = (Map<String, Object>) metrics.get("stages").get("batch");
+        Assert.assertEquals(1, ((Number) batch.get("count")).intValue());
+    }
+
+    // Metrics are for admins only, at the root and every section.
+    @Test
+    public void testMetricsRequireAdmin() throws Exception {
+        for (String path : new String[]{"/internal/metrics", "/internal/metrics/apply_offer"}) {
+            for (String role : new String[]{null, "customer", "admin"}) {
+                HttpURLConnection con = createConnection("http://localhost:9001" + path);
+                if (role != null) {
+                    con.setRequestProperty("user_role", role);
+                }
+                Assert.assertEquals(path + " as " + role, "admin".equals(role) ? 200 : 403, con.getResponseCode());
+                con.disconnect();
+            }
+        }
+    }
 }
@@ -0,0 +1,136 @@
+package com.springboot.capture;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+public class TrafficRecorderTest {
+
+    private Path file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = Files.createTempFile("traffic", ".capture");
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void readsBackEveryRecordInOrder() throws IOException {
+        try (TrafficRecorder recorder = new TrafficRecorder(file.toString(), 1, 65536, 10)) {
+            long now = System.nanoTime();
+            recorder.recordAddOffer(now, utf8("{\"restaurantId\":1}"), 200, utf8("{\"response_msg\":\"success\"}"));
+            for (int i = 0; i < 100; i++) {
+                recorder.recordApplyOffer(now + i, utf8("{\"user_id\":" + i + "}"), i, i % 3 != 0,
+                        i % 3 == 1 ? "p" + i : null, 200, utf8("{\"cart_value\":" + i + "}"));
+            }
+            recorder.recordApplyOffer(now, utf8("{"), 0, false, null, 400, new byte[0]);
+        }
+        List<CapturedRequest> requests = CaptureFile.read(file);
+        Assert.assertEquals(102, requests.size());
+
+        CapturedRequest add = requests.get(0);
+        Assert.assertEquals(CapturedRequest.Kind.ADD_OFFER, add.getKind());
+        Assert.assertEquals("{\"response_msg\":\"success\"}", new String(add.getResponse(), StandardCharsets.UTF_8));
+        Assert.assertFalse(add.isSegmentLookedUp());
+        for (int i = 0; i < 100; i++) {
+            CapturedRequest apply = requests.get(1 + i);
+            Assert.assertEquals(CapturedRequest.Kind.APPLY_OFFER, apply.getKind());
+            Assert.assertEquals(i, apply.getUserId());
+            Assert.assertEquals(i % 3 != 0, apply.isSegmentLookedUp());
+            Assert.assertEquals(i % 3 == 1 ? "p" + i : null, apply.getSegment());
+            Assert.assertEquals("{\"user_id\":" + i + "}", new String(apply.getBody(), StandardCharsets.UTF_8));
+            Assert.assertEquals(200, apply.getStatus());
+            Assert.assertEquals(i, apply.getOffsetNanos() - add.getOffsetNanos());
+        }
+        Assert.assertEquals(400, requests.get(101).getStatus());
+        Assert.assertEquals(0, requests.get(101).getResponse().length);
+    }
+
+    @Test
+    public void flushesWithoutClosing() throws Exception {
+        try (TrafficRecorder recorder = new TrafficRecorder(file.toString(), 1, 4096, 10)) {
+            recorder.recordAddOffer(System.nanoTime(), utf8("{}"), 200, utf8("{}"));
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (CaptureFile.read(file).isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(1, CaptureFile.read(file).size());
+        }
+    }
+
+    @Test
+    public void handsFullBufferToWriter() throws IOException {
+        int recordBytes = CaptureFile.encode(new CapturedRequest(CapturedRequest.Kind.ADD_OFFER, 0, 0, false, null,
+                utf8("{}"), 200, utf8("{}"))).length;
+        // Two records per buffer, and no flush before close.
+        try (TrafficRecorder recorder = new TrafficRecorder(file.toString(), 1, 2 * recordBytes, 60_000)) {
+            for (int i = 0; i < 4; i++) {
+                recorder.recordAddOffer(System.nanoTime(), utf8("{}"), 200, utf8("{}"));
+            }
+            Assert.assertEquals(4, recorder.getRecorded());
+            Assert.assertEquals(0, recorder.getDropped());
+        }
+        Assert.assertEquals(4, CaptureFile.read(file).size());
+    }
+
+    @Test
+    public void dropsRecordsLargerThanBuffer() throws IOException {
+        try (TrafficRecorder recorder = new TrafficRecorder(file.toString(), 1, 64, 10)) {
+            recorder.recordAddOffer(System.nanoTime(), new byte[100], 200, utf8("{}"));
+            Assert.assertEquals(0, recorder.getRecorded());
+            Assert.assertEquals(1, recorder.getDropped());
+        }
+        Assert.assertTrue(CaptureFile.read(file).isEmpty());
+    }
+
+    @Test
+    public void skipsTornLastRecord() throws IOException {
+        try (TrafficRecorder recorder = new TrafficRecorder(file.toString(), 1, 4096, 10)) {
+            recorder.recordAddOffer(System.nanoTime(), utf8("{}"), 200, utf8("{}"));
+            recorder.recordAddOffer(System.nanoTime(), utf8("{}"), 200, utf8("{}"));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        Assert.assertEquals(1, CaptureFile.read(file).size());
+    }
+
+    @Test
+    public void recordsNothingWhenDisabled() throws IOException {
+        try (TrafficRecorder recorder = new TrafficRecorder("", 1, 4096, 10)) {
+            Assert.assertFalse(recorder.isEnabled());
+            Assert.assertFalse(recorder.sample());
+        }
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(utf8("not a capture file")));
+        }
+        try {
+            CaptureFile.read(file);
+            Assert.fail("Read " + file);
+        } catch (IOException expected) {
+            // not a capture
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.springboot.controller;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.json.JsonSyntaxException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks the streaming codec against Jackson data-binding configured like
+ * Spring Boot's mapper (unknown properties ignored).
+ */
+public class CartOfferCodecTest {
+
+    private final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private static final String[] CARTS = {
+            "{\"cart_value\":200,\"user_id\":1,\"restaurant_id\":1}",
+            "{\"restaurant_id\":7,\"cart_value\":9223372036854775807,\"user_id\":-2147483648}",
+            " {\n\t\"cart_value\" : 0 , \"user_id\":3 ,\"restaurant_id\":4 }\r\n",
+            "{\"cart_value\":200,\"user_id\":1,\"restaurant_id\":1,\"simulate_segment_null\":true}",
+            "{\"cart_value\":200,\"extra\":{\"a\":[1,2,{\"b\":null}],\"c\":\"x\\\"y\"},\"user_id\":1}",
+            "{\"cart_value\":199.99,\"user_id\":\"12\",\"restaurant_id\":null}",
+            "{\"cart_value\":1e3,\"user_id\":1,\"restaurant_id\":1,\"simulate_segment_null\":false}",
+            "{\"cart_value\":1,\"cart_value\":2}",
+            "{\"cart\\u005fvalue\":5}",
+            "{}",
+    };
+
+    private static final String[] OFFERS = {
+            "{\"restaurantId\":1,\"offerType\":\"FLATX\",\"discount\":10,\"segments\":[\"p1\"]}",
+            "{\"segments\":[\"p1\",\"p2\",null],\"discount\":10,\"offerType\":\"FLATX%\",\"restaurantId\":2}",
+            "{\"restaurantId\":3,\"offerType\":\"caf\u00e9 \\u00e9\\n\\ud83d\\ude00\",\"discount\":0,\"segments\":[]}",
+            "{\"restaurantId\":4,\"offerType\":null,\"segments\":null,\"unknown\":[true,false]}",
+            "{\"restaurantId\":5,\"offerType\":12,\"discount\":\"7\"}",
+            "{\"restaurantId\":6,\"offerType\":\"FLATX\",\"discount\":5,\"segments\":[\"p1\"],"
+                    + "\"startTime\":1700000000000,\"endTime\":\"1700003600000\"}",
+            "{\"restaurantId\":7,\"offerType\":\"FLATX\",\"discount\":5,\"startTime\":null,\"endTime\":1700003600000}",
+            "{\"restaurantId\":8,\"offerType\":\"FLATX\",\"discount\":5,\"startTime\":0,\"endTime\":0}",
+    };
+
+    private static final String[] MALFORMED = {
+            "",
+            "[]",
+            "{\"cart_value\":}",
+            "{\"cart_value\":1,}",
+            "{\"cart_value\":1 \"user_id\":2}",
+            "{\"cart_value\":01}",
+            "{\"cart_value\":-}",
+            "{\"cart_value\":1.}",
+            "{\"cart_value\":tru}",
+            "{\"cart_value\":true}",
+            "{\"cart_value\":92233720368547758070}",
+            "{\"user_id\":2147483648}",
+            "{\"cart_value\":\"abc\"}",
+            "{\"cart_value\":1",
+            "{\"extra\":\"unterminated}",
+            "{\"extra\":\"bad \\x escape\"}",
+            "{cart_value:1}",
+    };
+
+    @Test
+    public void decodesCartsLikeJackson() throws Exception {
+        for (String json : CARTS) {
+            ApplyOfferRequest expected = mapper.readValue(json, ApplyOfferRequest.class);
+            ApplyOfferRequest actual = CartOfferCodec.readApplyOffer(bytes(json));
+            Assert.assertEquals(json, expected.getCartValue(), actual.getCartValue());
+            Assert.assertEquals(json, expected.getUserId(), actual.getUserId());
+            Assert.assertEquals(json, expected.getRestaurantId(), actual.getRestaurantId());
+            Assert.assertEquals(json, expected.isSimulateSegmentNull(), actual.isSimulateSegmentNull());
+        }
+    }
+
+    @Test
+    public void decodesOffersLikeJackson() throws Exception {
+        for (String json : OFFERS) {
+            OfferRequest expected = mapper.readValue(json, OfferRequest.class);
+            OfferRequest actual = CartOfferCodec.readOffer(bytes(json));
+            Assert.assertEquals(json, expected.getRestaurantId(), actual.getRestaurantId());
+            Assert.assertEquals(json, expected.getOfferType(), actual.getOfferType());
+            Assert.assertEquals(json, expected.getDiscount(), actual.getDiscount());
+            Assert.assertEquals(json, expected.getSegments(), actual.getSegments());
+            Assert.assertEquals(json, expected.getStartTime(), actual.getStartTime());
+            Assert.assertEquals(json, expected.getEndTime(), actual.getEndTime());
+        }
+    }
+
+    @Test
+    public void rejectsWhatJacksonRejects() {
+        for (String json : MALFORMED) {
+            boolean jacksonRejects = false;
+            try {
+                mapper.readValue(json, ApplyOfferRequest.class);
+            } catch (Exception e) {
+                jacksonRejects = true;
+            }
+            Assert.assertTrue("Jackson accepts " + json, jacksonRejects);
+            try {
+                CartOfferCodec.readApplyOffer(bytes(json));
+                Assert.fail("Accepted " + json);
+            } catch (JsonSyntaxException expected) {
+                // rejected as well
+            }
+        }
+    }
+
+    @Test
+    public void decodesBatches() throws Exception {
+        String json = "[" + String.join(",", CARTS) + "]";
+        List<ApplyOfferRequest> batch = CartOfferCodec.readApplyOfferBatch(bytes(json));
+        Assert.assertEquals(CARTS.length, batch.size());
+        Assert.assertEquals(200, batch.get(0).getCartValue());
+        Assert.assertEquals(0, CartOfferCodec.readApplyOfferBatch(bytes("[]")).size());
+    }
+
+    @Test
+    public void encodesLikeJackson() throws Exception {
+        for (long cartValue : new long[] {0, 1, 190, -5, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            Assert.assertEquals(mapper.writeValueAsString(new ApplyOfferResponse(cartValue)),
+                    string(CartOfferCodec.writeApplyOffer(cartValue)));
+        }
+        Assert.assertEquals(
+                mapper.writeValueAsString(Arrays.asList(new ApplyOfferResponse(1), new ApplyOfferResponse(2))),
+                string(CartOfferCodec.writeApplyOfferBatch(new long[] {1, 2})));
+        for (String message : new String[] {"success", "quote \" slash \\ tab \t nul \u0000", "caf\u00e9 \ud83d\ude00"}) {
+            Assert.assertEquals(mapper.writeValueAsString(new ApiResponse(message)),
+                    string(CartOfferCodec.writeApiResponse(message)));
+        }
+    }
+
+    @Test
+    public void keepsPooledReadersAndWritersApartAcrossVirtualThreads() throws Exception {
+        List<Future<Boolean>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 10000; i++) {
+                int userId = i;
+                results.add(executor.submit(() -> {
+                    ApplyOfferRequest request = CartOfferCodec.readApplyOffer(
+                            bytes("{\"cart_value\":" + userId + ",\"user_id\":" + userId + "}"));
+                    String response = string(CartOfferCodec.writeApplyOffer(request.getCartValue()));
+                    return request.getUserId() == userId && response.equals("{\"cart_value\":" + userId + "}");
+                }));
+            }
+        }
+        for (Future<Boolean> result : results) {
+            Assert.assertTrue(result.get());
+        }
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] json) {
+        return new String(json, StandardCharsets.UTF_8);
+    }
+}
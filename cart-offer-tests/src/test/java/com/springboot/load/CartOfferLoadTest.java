@@ -0,0 +1,108 @@
+package com.springboot.load;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockserver.integration.ClientAndServer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+/**
+ * Drives a locally started app with {@link LoadDriver}, with the user segment
+ * service stubbed by MockServer on port 1080.
+ *
+ * <p>Runs in the default platform-thread mode; {@link VirtualThreadLoadTest}
+ * repeats the same workloads with {@code execution.mode=virtual}. Throughput
+ * and latency are printed rather than asserted, as they depend on the machine
+ * and on MockServer, which answers every segment call.
+ */
+@Category(LoadTests.class)
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class CartOfferLoadTest {
+
+    private static ClientAndServer mockServer;
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${execution.mode:platform}")
+    private String executionMode;
+
+    @BeforeClass
+    public static void startMockServer() {
+        mockServer = ClientAndServer.startClientAndServer(1080);
+        // Every user is in segment p1.
+        mockServer.when(
+                request()
+                        .withMethod("GET")
+                        .withPath("/api/v1/user_segment")
+        ).respond(
+                response()
+                        .withStatusCode(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{ \"segment\": \"p1\" }")
+        );
+    }
+
+    @AfterClass
+    public static void stopMockServer() {
+        if (mockServer != null) {
+            mockServer.stop();
+        }
+    }
+
+    @Test
+    public void closedModelMixedWorkload() throws Exception {
+        LoadReport report = new LoadDriver("http://localhost:" + port)
+                .concurrency(8)
+                .requests(2000)
+                .addOfferRatio(0.1)
+                .users(1000)
+                .restaurants(100)
+                .run();
+        System.out.println("[" + executionMode + "] Closed model: " + report);
+        Assert.assertEquals(2000, report.getTotalRequests());
+        Assert.assertEquals(0, report.getFailed());
+    }
+
+    /**
+     * A hundred times as many carts in flight as {@link #closedModelMixedWorkload()}.
+     * Failed requests are reported, not asserted: in platform mode requests
+     * beyond Tomcat's threads and accept queue may be refused.
+     */
+    @Test
+    public void closedModelHighConcurrency() throws Exception {
+        LoadReport report = new LoadDriver("http://localhost:" + port)
+                .concurrency(800)
+                .requests(16000)
+                .users(10000)
+                .restaurants(100)
+                .run();
+        System.out.println("[" + executionMode + "] Closed model, 800 in flight: " + report);
+        Assert.assertEquals(16000, report.getTotalRequests());
+    }
+
+    @Test
+    public void openModelConstantArrivalRate() throws Exception {
+        LoadReport report = new LoadDriver("http://localhost:" + port)
+                .concurrency(16)
+                .arrivalRate(500)
+                .duration(3, TimeUnit.SECONDS)
+                .users(1000)
+                .restaurants(100)
+                .run();
+        System.out.println("[" + executionMode + "] Open model: " + report);
+        Assert.assertEquals(0, report.getFailed());
+    }
+}
@@ -0,0 +1,190 @@
+package com.springboot.load;
+
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load driver for the cart offer API.
+ *
+ * <p>Runs a mix of add-offer and apply-offer requests from a fixed number of
+ * workers over keep-alive connections. Each run has its own HTTP client, so
+ * its connections are neither shared with nor limited by anything else in the
+ * JVM, and each worker keeps at most one of them busy. In the closed model every worker sends
+ * its next request as soon as the previous one completes. In the open model
+ * ({@link #arrivalRate(int)}) requests are scheduled at a constant rate and
+ * latency is measured from the scheduled start, so a stalled server shows up
+ * in the percentiles instead of silently slowing the client down
+ * (coordinated omission).
+ */
+public class LoadDriver {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final String baseUrl;
+    private int concurrency = 4;
+    private long totalRequests = Long.MAX_VALUE;
+    private long durationNanos = Long.MAX_VALUE;
+    private int arrivalRate;
+    private double addOfferRatio;
+    private int users = 1;
+    private int restaurants = 1;
+
+    public LoadDriver(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    /** Number of concurrent workers (and connections). */
+    public LoadDriver concurrency(int concurrency) {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /** Stop after this many requests. */
+    public LoadDriver requests(long totalRequests) {
+        this.totalRequests = totalRequests;
+        return this;
+    }
+
+    /** Stop after this much time. */
+    public LoadDriver duration(long duration, TimeUnit unit) {
+        this.durationNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /** Requests per second for the open model; 0 (the default) runs the closed model. */
+    public LoadDriver arrivalRate(int requestsPerSecond) {
+        this.arrivalRate = requestsPerSecond;
+        return this;
+    }
+
+    /** Fraction of requests that register an offer instead of applying one. */
+    public LoadDriver addOfferRatio(double addOfferRatio) {
+        this.addOfferRatio = addOfferRatio;
+        return this;
+    }
+
+    /** user_id values are drawn uniformly from [1, users]. */
+    public LoadDriver users(int users) {
+        this.users = users;
+        return this;
+    }
+
+    /** restaurant_id values are drawn uniformly from [1, restaurants]. */
+    public LoadDriver restaurants(int restaurants) {
+        this.restaurants = restaurants;
+        return this;
+    }
+
+    public LoadReport run() throws InterruptedException {
+        if (totalRequests == Long.MAX_VALUE && durationNanos == Long.MAX_VALUE) {
+            throw new IllegalStateException("Either requests or duration must be set");
+        }
+        try (HttpClient client = newClient()) {
+            return run(client);
+        }
+    }
+
+    /** An HTTP/1.1 client whose keep-alive pool belongs to one run. */
+    static HttpClient newClient() {
+        return HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    private LoadReport run(HttpClient client) throws InterruptedException {
+        Recorder applyLatency = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+        Recorder addLatency = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+        LongAdder rateLimited = new LongAdder();
+        LongAdder failed = new LongAdder();
+        AtomicLong nextSlot = new AtomicLong();
+        long intervalNanos = arrivalRate > 0 ? TimeUnit.SECONDS.toNanos(1) / arrivalRate : 0;
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        long end = durationNanos == Long.MAX_VALUE ? Long.MAX_VALUE : start + durationNanos;
+        for (int i = 0; i < concurrency; i++) {
+            workers.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (true) {
+                    long slot = nextSlot.getAndIncrement();
+                    if (slot >= totalRequests) {
+                        return;
+                    }
+                    long intended = intervalNanos > 0 ? start + slot * intervalNanos : System.nanoTime();
+                    if (intended - end >= 0) {
+                        return;
+                    }
+                    waitUntil(intended);
+                    boolean addOffer = random.nextDouble() < addOfferRatio;
+                    int status = addOffer ? addOffer(client, random) : applyOffer(client, random);
+                    long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended);
+                    (addOffer ? addLatency : applyLatency)
+                            .recordValue(Math.min(latencyMicros, HIGHEST_TRACKABLE_MICROS));
+                    if (status == 429) {
+                        rateLimited.increment();
+                    } else if (status != 200) {
+                        failed.increment();
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        long elapsed = System.nanoTime() - start;
+        return new LoadReport(applyLatency.getIntervalHistogram(), addLatency.getIntervalHistogram(),
+                rateLimited.sum(), failed.sum(), elapsed);
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private int applyOffer(HttpClient client, ThreadLocalRandom random) {
+        int userId = 1 + random.nextInt(users);
+        String body = "{\"cart_value\":" + (50 + random.nextInt(500))
+                + ",\"user_id\":" + userId
+                + ",\"restaurant_id\":" + (1 + random.nextInt(restaurants)) + "}";
+        return post(client, "/api/v1/cart/apply_offer", body, "customer");
+    }
+
+    private int addOffer(HttpClient client, ThreadLocalRandom random) {
+        String body = "{\"restaurantId\":" + (1 + random.nextInt(restaurants))
+                + ",\"offerType\":\"" + (random.nextBoolean() ? "FLATX" : "FLATX%")
+                + "\",\"discount\":" + (1 + random.nextInt(50))
+                + ",\"segments\":[\"p1\"]}";
+        return post(client, "/api/v1/offer", body, "admin");
+    }
+
+    /**
+     * Posts the body and discards the response, which leaves the connection in
+     * the client's keep-alive pool. Returns the status code, or -1 on I/O errors.
+     */
+    private int post(HttpClient client, String path, String body, String role) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .header("user_role", role)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+}
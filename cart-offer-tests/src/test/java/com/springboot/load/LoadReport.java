@@ -0,0 +1,77 @@
+package com.springboot.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result of a {@link LoadDriver} run. Latencies are in microseconds.
+ */
+public class LoadReport {
+
+    private final Histogram applyLatency;
+    private final Histogram addOfferLatency;
+    private final long rateLimited;
+    private final long failed;
+    private final long elapsedNanos;
+
+    LoadReport(Histogram applyLatency, Histogram addOfferLatency, long rateLimited, long failed, long elapsedNanos) {
+        this.applyLatency = applyLatency;
+        this.addOfferLatency = addOfferLatency;
+        this.rateLimited = rateLimited;
+        this.failed = failed;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public Histogram getApplyLatency() {
+        return applyLatency;
+    }
+
+    public Histogram getAddOfferLatency() {
+        return addOfferLatency;
+    }
+
+    public long getTotalRequests() {
+        return applyLatency.getTotalCount() + addOfferLatency.getTotalCount();
+    }
+
+    /** Requests answered with HTTP 429. */
+    public long getRateLimited() {
+        return rateLimited;
+    }
+
+    /** Requests that failed at the transport level or with a status other than 200/429. */
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /** Achieved throughput in requests per second. */
+    public double getThroughput() {
+        return getTotalRequests() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("requests=%d elapsed=%dms throughput=%.1f/s rateLimited=%d failed=%d%n"
+                        + "  apply_offer  %s%n"
+                        + "  add_offer    %s",
+                getTotalRequests(), getElapsedMillis(), getThroughput(), rateLimited, failed,
+                percentiles(applyLatency), percentiles(addOfferLatency));
+    }
+
+    private static String percentiles(Histogram histogram) {
+        if (histogram.getTotalCount() == 0) {
+            return "n=0";
+        }
+        return String.format("n=%d p50=%dus p99=%dus p99.9=%dus max=%dus",
+                histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50),
+                histogram.getValueAtPercentile(99),
+                histogram.getValueAtPercentile(99.9),
+                histogram.getMaxValue());
+    }
+}
@@ -0,0 +1,8 @@
+package com.springboot.load;
+
+/**
+ * JUnit category for tests whose outcome depends on how fast the machine is.
+ * They are left out of the default build; run them with {@code mvn test -Pload}.
+ */
+public interface LoadTests {
+}
@@ -0,0 +1,45 @@
+package com.springboot.load;
+
+import java.util.List;
+
+/**
+ * Result of a {@link TrafficReplayer} run: the load figures, where failed
+ * means a transport error or 5xx, and the responses that differed from the
+ * captured ones.
+ */
+public class ReplayReport {
+
+    private final LoadReport load;
+    private final long mismatches;
+    private final List<String> examples;
+
+    ReplayReport(LoadReport load, long mismatches, List<String> examples) {
+        this.load = load;
+        this.mismatches = mismatches;
+        this.examples = examples;
+    }
+
+    public LoadReport getLoad() {
+        return load;
+    }
+
+    /** Responses whose status or body differed from the captured response. */
+    public long getMismatches() {
+        return mismatches;
+    }
+
+    /** The first few mismatches, with the captured and the actual response. */
+    public List<String> getExamples() {
+        return examples;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder(load.toString())
+                .append(String.format("%n  mismatches   %d", mismatches));
+        for (String example : examples) {
+            out.append(String.format("%n    %s", example));
+        }
+        return out.toString();
+    }
+}
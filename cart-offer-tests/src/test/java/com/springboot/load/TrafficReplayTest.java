@@ -0,0 +1,155 @@
+package com.springboot.load;
+
+import com.springboot.capture.CaptureFile;
+import com.springboot.capture.CapturedRequest;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockserver.integration.ClientAndServer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+/**
+ * Captures traffic from a locally started app and replays it with
+ * {@link TrafficReplayer}. Users with odd ids are in segment p2, the others in
+ * p1, and every request is captured.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "capture.file=" + TrafficReplayTest.CAPTURE,
+        "capture.sample-rate=1",
+        "capture.flush-interval-ms=20",
+        "rate-limit.user.capacity=1000"})
+public class TrafficReplayTest {
+
+    static final String CAPTURE = "target/traffic-replay-test.capture";
+
+    private static ClientAndServer mockServer;
+
+    @LocalServerPort
+    private int port;
+
+    @BeforeClass
+    public static void startMockServer() {
+        mockServer = ClientAndServer.startClientAndServer(1080);
+        mockServer.when(
+                request()
+                        .withMethod("GET")
+                        .withPath("/api/v1/user_segment")
+        ).respond(httpRequest -> {
+            int userId = Integer.parseInt(httpRequest.getFirstQueryStringParameter("user_id"));
+            return response()
+                    .withStatusCode(200)
+                    .withHeader("Content-Type", "application/json")
+                    .withBody("{ \"segment\": \"" + (userId % 2 == 1 ? "p2" : "p1") + "\" }");
+        });
+    }
+
+    @AfterClass
+    public static void stopMockServer() {
+        if (mockServer != null) {
+            mockServer.stop();
+        }
+    }
+
+    @Test
+    public void replaysCapturedTrafficWithSameResponses() throws Exception {
+        String baseUrl = "http://localhost:" + port;
+        for (int r = 1; r <= 10; r++) {
+            post(baseUrl + "/api/v1/offer", "{\"restaurantId\":" + r
+                    + ",\"offerType\":\"FLATX\",\"discount\":10,\"segments\":[\"p1\"]}", "admin");
+            post(baseUrl + "/api/v1/offer", "{\"restaurantId\":" + r
+                    + ",\"offerType\":\"FLATX%\",\"discount\":20,\"segments\":[\"p2\"]}", "admin");
+        }
+        for (int userId = 1; userId <= 100; userId++) {
+            // Restaurants 11 and 12 have no offers.
+            post(baseUrl + "/api/v1/cart/apply_offer", "{\"cart_value\":" + (100 + userId)
+                    + ",\"user_id\":" + userId + ",\"restaurant_id\":" + (1 + userId % 12) + "}", "customer");
+        }
+
+        List<CapturedRequest> captured = awaitCapture(120);
+        Assert.assertEquals(CapturedRequest.Kind.ADD_OFFER, captured.get(0).getKind());
+        CapturedRequest apply = captured.get(20);
+        Assert.assertEquals(CapturedRequest.Kind.APPLY_OFFER, apply.getKind());
+        Assert.assertEquals(1, apply.getUserId());
+        Assert.assertEquals("p2", apply.getSegment());
+        Assert.assertEquals("{\"cart_value\":81}", new String(apply.getResponse(), StandardCharsets.UTF_8));
+
+        // From here on segments come from the capture only.
+        mockServer.reset();
+        TrafficReplayer.stubSegments(mockServer, captured);
+        Assert.assertEquals("{\"segment\":\"p1\"}", get("http://localhost:1080/api/v1/user_segment?user_id=2"));
+        Assert.assertNull(get("http://localhost:1080/api/v1/user_segment?user_id=1000"));
+
+        ReplayReport report = new TrafficReplayer(baseUrl, captured)
+                .speed(4)
+                .concurrency(1)
+                .run();
+        System.out.println("Replay: " + report);
+        Assert.assertEquals(120, report.getLoad().getTotalRequests());
+        Assert.assertEquals(0, report.getLoad().getFailed());
+        Assert.assertEquals(report.getExamples().toString(), 0, report.getMismatches());
+    }
+
+    /**
+     * Waits for the recorder's periodic flush to write the requests sent so far.
+     */
+    private static List<CapturedRequest> awaitCapture(int requests) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        List<CapturedRequest> captured = CaptureFile.read(Paths.get(CAPTURE));
+        while (captured.size() < requests && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            captured = CaptureFile.read(Paths.get(CAPTURE));
+        }
+        Assert.assertEquals(requests, captured.size());
+        return captured;
+    }
+
+    private static void post(String url, String body, String role) throws IOException {
+        HttpURLConnection con = (HttpURLConnection) new URL(url).openConnection();
+        con.setDoOutput(true);
+        con.setRequestProperty("Content-Type", "application/json");
+        con.setRequestProperty("user_role", role);
+        try (OutputStream os = con.getOutputStream()) {
+            os.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        Assert.assertEquals(200, con.getResponseCode());
+        read(con.getInputStream());
+    }
+
+    /**
+     * Returns the body of a 200 response, or null for any other status.
+     */
+    private static String get(String url) throws IOException {
+        HttpURLConnection con = (HttpURLConnection) new URL(url).openConnection();
+        return con.getResponseCode() == 200 ? read(con.getInputStream()) : null;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (InputStream response = in) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int n;
+            while ((n = response.read(buffer)) != -1) {
+                body.write(buffer, 0, n);
+            }
+            return body.toString(StandardCharsets.UTF_8.name());
+        }
+    }
+}
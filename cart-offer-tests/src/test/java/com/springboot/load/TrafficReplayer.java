@@ -0,0 +1,246 @@
+package com.springboot.load;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.capture.CaptureFile;
+import com.springboot.capture.CapturedRequest;
+import com.springboot.segment.SegmentResponse;
+import org.HdrHistogram.Recorder;
+import org.mockserver.integration.ClientAndServer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+/**
+ * Replays a traffic capture written by
+ * {@link com.springboot.capture.TrafficRecorder} against a running instance.
+ *
+ * <p>Each request is sent at its captured offset divided by
+ * {@link #speed(double)}, and latency is measured from that scheduled time,
+ * as in {@link LoadDriver}'s open model. Each response is compared with the
+ * captured one. {@link #stubSegments} makes a MockServer answer segment
+ * lookups the way the segment service answered them during the capture.
+ */
+public class TrafficReplayer {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final int MISMATCH_EXAMPLES = 10;
+
+    private final String baseUrl;
+    private final List<CapturedRequest> requests;
+    private double speed = 1;
+    private int concurrency = 4;
+    private boolean compareResponses = true;
+
+    public TrafficReplayer(String baseUrl, List<CapturedRequest> requests) {
+        this.baseUrl = baseUrl;
+        this.requests = requests;
+    }
+
+    /** Multiple of the captured request rate; 0 sends every request as soon as a worker is free. */
+    public TrafficReplayer speed(double speed) {
+        this.speed = speed;
+        return this;
+    }
+
+    /**
+     * Number of concurrent workers (and connections). With one, requests are
+     * sent strictly in captured order.
+     */
+    public TrafficReplayer concurrency(int concurrency) {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /** Whether to compare responses with the captured ones; on by default. */
+    public TrafficReplayer compareResponses(boolean compareResponses) {
+        this.compareResponses = compareResponses;
+        return this;
+    }
+
+    /**
+     * Answers {@code /api/v1/user_segment} on the server with the segment each
+     * captured user resolved to, and with 404 (no segment) for anyone else.
+     */
+    public static void stubSegments(ClientAndServer server, List<CapturedRequest> requests) {
+        Map<String, String> bodies = new HashMap<>();
+        ObjectMapper mapper = new ObjectMapper();
+        for (CapturedRequest captured : requests) {
+            if (captured.isSegmentLookedUp() && captured.getSegment() != null) {
+                try {
+                    bodies.put(String.valueOf(captured.getUserId()),
+                            mapper.writeValueAsString(new SegmentResponse(captured.getSegment())));
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        server.when(
+                request()
+                        .withMethod("GET")
+                        .withPath("/api/v1/user_segment")
+        ).respond(httpRequest -> {
+            String body = bodies.get(httpRequest.getFirstQueryStringParameter("user_id"));
+            return body == null
+                    ? response().withStatusCode(404)
+                    : response().withStatusCode(200).withHeader("Content-Type", "application/json").withBody(body);
+        });
+    }
+
+    /**
+     * Replays every request over keep-alive connections of a client of its
+     * own, as {@link LoadDriver} does.
+     */
+    public ReplayReport run() throws InterruptedException {
+        try (HttpClient client = LoadDriver.newClient()) {
+            return run(client);
+        }
+    }
+
+    private ReplayReport run(HttpClient client) throws InterruptedException {
+        Recorder applyLatency = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+        Recorder addLatency = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+        LongAdder rateLimited = new LongAdder();
+        LongAdder failed = new LongAdder();
+        LongAdder mismatches = new LongAdder();
+        List<String> examples = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger next = new AtomicInteger();
+        long firstOffset = requests.isEmpty() ? 0 : requests.get(0).getOffsetNanos();
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            workers.execute(() -> {
+                int index;
+                while ((index = next.getAndIncrement()) < requests.size()) {
+                    CapturedRequest captured = requests.get(index);
+                    long intended = speed > 0
+                            ? start + (long) ((captured.getOffsetNanos() - firstOffset) / speed)
+                            : System.nanoTime();
+                    waitUntil(intended);
+                    Response actual = send(client, captured);
+                    long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended);
+                    (captured.getKind() == CapturedRequest.Kind.APPLY_OFFER ? applyLatency : addLatency)
+                            .recordValue(Math.min(latencyMicros, HIGHEST_TRACKABLE_MICROS));
+                    if (actual.status == 429) {
+                        rateLimited.increment();
+                        continue;
+                    }
+                    if (actual.status == -1 || actual.status >= 500) {
+                        failed.increment();
+                    }
+                    if (compareResponses && (actual.status != captured.getStatus()
+                            || !Arrays.equals(actual.body, captured.getResponse()))) {
+                        mismatches.increment();
+                        if (examples.size() < MISMATCH_EXAMPLES) {
+                            examples.add(describe(index, captured, actual));
+                        }
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        long elapsed = System.nanoTime() - start;
+        LoadReport load = new LoadReport(applyLatency.getIntervalHistogram(), addLatency.getIntervalHistogram(),
+                rateLimited.sum(), failed.sum(), elapsed);
+        return new ReplayReport(load, mismatches.sum(), examples);
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static String describe(int index, CapturedRequest captured, Response actual) {
+        return String.format("#%d %s %s: expected %d %s, got %d %s", index, captured.getKind().getPath(),
+                new String(captured.getBody(), StandardCharsets.UTF_8),
+                captured.getStatus(), new String(captured.getResponse(), StandardCharsets.UTF_8),
+                actual.status, new String(actual.body, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Posts the captured body with the headers the captured caller would have
+     * sent, and reads the whole response. Status -1 means an I/O error.
+     */
+    private Response send(HttpClient client, CapturedRequest captured) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + captured.getKind().getPath()))
+                .header("Content-Type", "application/json")
+                .header("user_role", captured.getKind() == CapturedRequest.Kind.APPLY_OFFER ? "customer" : "admin")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(captured.getBody()))
+                .build();
+        try {
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            return new Response(response.statusCode(), response.body());
+        } catch (IOException e) {
+            return new Response(-1, new byte[0]);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Response(-1, new byte[0]);
+        }
+    }
+
+    private static final class Response {
+        final int status;
+        final byte[] body;
+
+        Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    /**
+     * {@code TrafficReplayer <capture file> <base url> [speed] [segment stub port]}
+     *
+     * <p>With a stub port, a MockServer answering segment lookups from the
+     * capture is started there first. Exits with 1 if any request failed or
+     * any response differed from the captured one.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: TrafficReplayer <capture file> <base url> [speed] [segment stub port]");
+            System.exit(2);
+        }
+        List<CapturedRequest> requests = CaptureFile.read(Paths.get(args[0]));
+        ClientAndServer stub = null;
+        if (args.length > 3) {
+            stub = ClientAndServer.startClientAndServer(Integer.parseInt(args[3]));
+            stubSegments(stub, requests);
+        }
+        ReplayReport report;
+        try {
+            report = new TrafficReplayer(args[1], requests)
+                    .speed(args.length > 2 ? Double.parseDouble(args[2]) : 1)
+                    .run();
+        } finally {
+            if (stub != null) {
+                stub.stop();
+            }
+        }
+        System.out.println(report);
+        System.exit(report.getLoad().getFailed() == 0 && report.getMismatches() == 0 ? 0 : 1);
+    }
+}
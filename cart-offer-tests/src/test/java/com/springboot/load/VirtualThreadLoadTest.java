@@ -0,0 +1,15 @@
+package com.springboot.load;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * {@link CartOfferLoadTest} with requests and segment fetches on virtual
+ * threads. Both classes print their reports with the execution mode, so one
+ * run of the load tests gives a side-by-side comparison. The
+ * {@link LoadTests} category is inherited, so this class also runs only with
+ * {@code -Pload}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "execution.mode=virtual")
+public class VirtualThreadLoadTest extends CartOfferLoadTest {
+}
@@ -0,0 +1,43 @@
+package com.springboot.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketBoundsAreContiguous() {
+        Assert.assertEquals(0, LatencyHistogram.index(0));
+        Assert.assertEquals(7, LatencyHistogram.index(7));
+        for (long value : new long[] {8, 15, 16, 1000, 123_456_789L, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.index(value);
+            Assert.assertTrue(LatencyHistogram.lowerBound(index) <= value);
+            if (value != Long.MAX_VALUE) {
+                Assert.assertTrue(LatencyHistogram.lowerBound(index + 1) > value);
+            }
+        }
+    }
+
+    @Test
+    public void percentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        Assert.assertEquals(10_000, histogram.getCount());
+        assertWithin(5_000_000, histogram.percentile(50));
+        assertWithin(9_900_000, histogram.percentile(99));
+        Assert.assertEquals(10_000_000, histogram.percentile(100));
+    }
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        Assert.assertEquals(0, new LatencyHistogram().percentile(99));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        Assert.assertTrue("expected ~" + expected + " but was " + actual,
+                actual >= expected && actual <= expected + expected / 8);
+    }
+}
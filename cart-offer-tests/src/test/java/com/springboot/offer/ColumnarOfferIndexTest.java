@@ -0,0 +1,124 @@
+package com.springboot.offer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class ColumnarOfferIndexTest {
+
+    @Test
+    public void matchesHeapIndexUnderRandomChanges() {
+        Random random = new Random(7);
+        EntryIndex columnar = ColumnarOfferIndex.empty();
+        EntryIndex heap = OfferIndex.EMPTY;
+        for (int round = 0; round < 20; round++) {
+            EntryIndex.Mutation columnarChanges = columnar.mutate();
+            EntryIndex.Mutation heapChanges = heap.mutate();
+            for (int i = 0; i < 5_000; i++) {
+                int restaurantId = random.nextInt(20_000) - 100;
+                int segmentId = random.nextInt(8);
+                if (random.nextInt(4) == 0) {
+                    columnarChanges.remove(restaurantId, segmentId);
+                    heapChanges.remove(restaurantId, segmentId);
+                } else {
+                    OfferEntry entry = new OfferEntry(restaurantId, segmentId, random.nextInt(100),
+                            random.nextInt(100), random.nextInt(50), random.nextInt(50));
+                    columnarChanges.put(entry);
+                    heapChanges.put(entry);
+                }
+            }
+            columnar = columnarChanges.build();
+            heap = heapChanges.build();
+            Assert.assertEquals(heap.size(), columnar.size());
+            EntryIndex expected = heap;
+            EntryIndex actual = columnar;
+            Map<Long, OfferEntry> seen = new HashMap<>();
+            actual.forEach(entry -> seen.put(entry.key, entry));
+            Assert.assertEquals(expected.size(), seen.size());
+            expected.forEach(entry -> {
+                assertSameEntry(entry, actual.get(entry.getRestaurantId(), entry.getSegmentId()));
+                assertSameEntry(entry, seen.get(entry.key));
+            });
+        }
+        Assert.assertNull(columnar.get(20_000, 0));
+    }
+
+    @Test
+    public void leavesPublishedIndexUnchanged() {
+        EntryIndex empty = ColumnarOfferIndex.empty();
+        EntryIndex.Mutation mutation = empty.mutate();
+        mutation.put(new OfferEntry(1, 0, 10, 0));
+        EntryIndex first = mutation.build();
+
+        EntryIndex.Mutation next = first.mutate();
+        next.put(new OfferEntry(1, 0, 20, 5));
+        next.put(new OfferEntry(2, 0, 30, 0));
+        next.remove(1, 0);
+        EntryIndex second = next.build();
+
+        Assert.assertEquals(10, first.get(1, 0).getFlatDiscount());
+        Assert.assertNull(first.get(2, 0));
+        Assert.assertEquals(1, first.size());
+        Assert.assertNull(second.get(1, 0));
+        Assert.assertEquals(30, second.get(2, 0).getFlatDiscount());
+        Assert.assertEquals(0, empty.size());
+    }
+
+    @Test
+    public void rollsBackIndexThatWasNotKept() {
+        EntryIndex.Mutation mutation = ColumnarOfferIndex.empty().mutate();
+        mutation.put(new OfferEntry(1, 0, 10, 0));
+        EntryIndex first = mutation.build();
+
+        EntryIndex.Mutation failed = first.mutate();
+        failed.put(new OfferEntry(1, 0, 99, 0));
+        failed.put(new OfferEntry(2, 0, 99, 0));
+        failed.build();
+
+        EntryIndex.Mutation next = first.mutate();
+        Assert.assertEquals(10, next.get(1, 0).getFlatDiscount());
+        Assert.assertNull(next.get(2, 0));
+        next.put(new OfferEntry(3, 0, 30, 0));
+        EntryIndex second = next.build();
+
+        Assert.assertEquals(10, second.get(1, 0).getFlatDiscount());
+        Assert.assertNull(second.get(2, 0));
+        Assert.assertEquals(30, second.get(3, 0).getFlatDiscount());
+        Assert.assertEquals(2, second.size());
+    }
+
+    @Test
+    public void reclaimsSupersededRows() {
+        EntryIndex index = ColumnarOfferIndex.empty();
+        EntryIndex first = null;
+        for (int round = 1; round <= 100; round++) {
+            EntryIndex.Mutation mutation = index.mutate();
+            for (int restaurantId = 0; restaurantId < 2_000; restaurantId++) {
+                mutation.put(new OfferEntry(restaurantId, 0, round, 0));
+            }
+            index = mutation.build();
+            if (first == null) {
+                first = index;
+            }
+        }
+        Assert.assertEquals(2_000, index.size());
+        Assert.assertEquals(100, index.get(1_999, 0).getFlatDiscount());
+        // Older indexes keep reading the rows they were built with.
+        Assert.assertEquals(1, first.get(1_999, 0).getFlatDiscount());
+        Assert.assertEquals(2_000, first.size());
+    }
+
+    private static void assertSameEntry(OfferEntry expected, OfferEntry actual) {
+        Assert.assertNotNull(actual);
+        Assert.assertEquals(expected.getRestaurantId(), actual.getRestaurantId());
+        Assert.assertEquals(expected.getSegmentId(), actual.getSegmentId());
+        Assert.assertEquals(expected.getFlatDiscount(), actual.getFlatDiscount());
+        Assert.assertEquals(expected.getPercentDiscount(), actual.getPercentDiscount());
+        Assert.assertEquals(expected.getBaseFlatDiscount(), actual.getBaseFlatDiscount());
+        Assert.assertEquals(expected.getBasePercentDiscount(), actual.getBasePercentDiscount());
+        Assert.assertEquals(expected.getPercentFrom(), actual.getPercentFrom());
+    }
+}
@@ -0,0 +1,47 @@
+package com.springboot.offer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class OfferEntryTest {
+
+    @Test
+    public void switchesToPercentAtBreakpoint() {
+        // FLATX 10 vs FLATX% 10, as in testMultipleOffersForSegment_TC07: a tie at 100 goes to FLATX.
+        OfferEntry entry = new OfferEntry(1, 0, 10, 10);
+        Assert.assertEquals(110, entry.getPercentFrom());
+        Assert.assertEquals(89, entry.apply(99));
+        Assert.assertEquals(OfferType.FLATX, entry.bestType(100));
+        Assert.assertEquals(90, entry.apply(100));
+        Assert.assertEquals(OfferType.FLATX, entry.bestType(109));
+        Assert.assertEquals(OfferType.FLATX_PERCENT, entry.bestType(110));
+        Assert.assertEquals(99, entry.apply(110));
+        Assert.assertEquals(180, entry.apply(200));
+    }
+
+    @Test
+    public void percentNeverWinsWithoutPercentOffer() {
+        OfferEntry entry = new OfferEntry(1, 0, 10, 0);
+        Assert.assertEquals(Long.MAX_VALUE, entry.getPercentFrom());
+        Assert.assertEquals(Long.MAX_VALUE - 10, entry.apply(Long.MAX_VALUE));
+        Assert.assertNull(OfferEntry.empty(1, 0).bestType(500));
+    }
+
+    @Test
+    public void matchesEvaluatingBothOffers() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long flat = random.nextInt(1000);
+            long percent = random.nextInt(101);
+            long cartValue = random.nextInt(100_000);
+            OfferEntry entry = new OfferEntry(1, 0, flat, percent);
+            long percentOff = OfferType.percentOf(cartValue, percent);
+            long best = Math.max(flat, percentOff);
+            Assert.assertEquals(OfferType.clamp(cartValue, best), entry.apply(cartValue));
+            OfferType expected = best == 0 ? null : flat >= percentOff ? OfferType.FLATX : OfferType.FLATX_PERCENT;
+            Assert.assertEquals(expected, entry.bestType(cartValue));
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.springboot.offer;
+
+import com.springboot.controller.OfferRequest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class OfferStoreTest {
+
+    private final OfferStore store = new OfferStore();
+
+    @After
+    public void closeStore() {
+        store.close();
+    }
+
+    @Test
+    public void appliesFlatOffer() {
+        Assert.assertTrue(store.addOffer(new OfferRequest(1, "FLATX", 10, Collections.singletonList("p1"))));
+        Assert.assertEquals(190, store.applyOffer(1, "p1", 200));
+    }
+
+    @Test
+    public void appliesPercentOffer() {
+        Assert.assertTrue(store.addOffer(new OfferRequest(1, "FLATX%", 10, Collections.singletonList("p1"))));
+        Assert.assertEquals(180, store.applyOffer(1, "p1", 200));
+    }
+
+    @Test
+    public void leavesCartUnchangedWithoutMatchingOffer() {
+        store.addOffer(new OfferRequest(1, "FLATX", 10, Collections.singletonList("p1")));
+        Assert.assertEquals(200, store.applyOffer(9999, "p1", 200));
+        Assert.assertEquals(200, store.applyOffer(1, "p2", 200));
+        Assert.assertEquals(200, store.applyOffer(1, null, 200));
+    }
+
+    @Test
+    public void rejectsInvalidOfferType() {
+        Assert.assertFalse(store.addOffer(new OfferRequest(1, "INVALID", 10, Collections.singletonList("p1"))));
+        Assert.assertEquals(200, store.applyOffer(1, "p1", 200));
+    }
+
+    @Test
+    public void rejectsSegmentsTheJournalCannotPersist() {
+        // 21846 three-byte chars: short enough in chars, too long in UTF-8.
+        String tooLong = String.join("", Collections.nCopies(OfferJournal.MAX_SEGMENT_NAME_BYTES / 3 + 1, "\u20ac"));
+        Assert.assertFalse(store.addOffer(new OfferRequest(1, "FLATX", 10, Collections.singletonList(tooLong))));
+        String[] tooMany = new String[OfferJournal.MAX_SEGMENTS + 1];
+        Arrays.setAll(tooMany, i -> "s" + i);
+        Assert.assertFalse(store.addOffer(new OfferRequest(1, "FLATX", 10, Arrays.asList(tooMany))));
+        Assert.assertEquals(SegmentRegistry.UNKNOWN, store.getSegments().idOf(tooLong));
+
+        String longest = String.join("", Collections.nCopies(OfferJournal.MAX_SEGMENT_NAME_BYTES, "a"));
+        Assert.assertTrue(store.addOffer(new OfferRequest(1, "FLATX", 10, Collections.singletonList(longest))));
+    }
+
+    @Test
+    public void clampsAtZero() {
+        store.addOffer(new OfferRequest(1, "FLATX", 250, Collections.singletonList("p1")));
+        Assert.assertEquals(0, store.applyOffer(1, "p1", 200));
+    }
+
+    @Test
+    public void picksBestOfSeveralOffers() {
+        store.addOffer(new OfferRequest(1, "FLATX", 10, Collections.singletonList("p1")));
+        store.addOffer(new OfferRequest(1, "FLATX%", 10, Collections.singletonList("p1")));
+        Assert.assertEquals(180, store.applyOffer(1, "p1", 200));
+        Assert.assertEquals(40, store.applyOffer(1, "p1", 50));
+        Assert.assertEquals(90, store.applyOffer(1, "p1", 100));
+    }
+
+    @Test
+    public void registersOfferForEverySegment() {
+        store.addOffer(new OfferRequest(1, "FLATX", 10, Arrays.asList("p1", "p2")));
+        Assert.assertEquals(190, store.applyOffer(1, "p1", 200));
+        Assert.assertEquals(190, store.applyOffer(1, "p2", 200));
+    }
+
+    @Test
+    public void tracksEligibleSegmentsPerRestaurant() {
+        store.addOffer(new OfferRequest(1, "FLATX", 10, Arrays.asList("p1", "p3", "p1")));
+        store.addOffer(new OfferRequest(2, "FLATX", 10, Collections.singletonList("p2")));
+        SegmentRegistry segments = store.getSegments();
+
+        Assert.assertEquals(SegmentSet.of(segments.idOf("p1"), segments.idOf("p3")), store.segmentsOf(1));
+        Assert.assertTrue(store.hasOffers(2));
+        Assert.assertFalse(store.hasOffers(3));
+        Assert.assertTrue(store.segmentsOf(3).isEmpty());
+    }
+
+    @Test
+    public void sharesSegmentOffersJsonUntilOffersChange() {
+        store.addOffer(new OfferRequest(2, "FLATX", 10, Collections.singletonList("p1")));
+        store.addOffer(new OfferRequest(1, "FLATX%", 5, Collections.singletonList("p1")));
+        byte[] json = store.offersJson("p1");
+        Assert.assertEquals("[{\"restaurantId\":1,\"offerType\":\"FLATX%\",\"discount\":5,\"segments\":[\"p1\"]},"
+                        + "{\"restaurantId\":2,\"offerType\":\"FLATX\",\"discount\":10,\"segments\":[\"p1\"]}]",
+                new String(json, StandardCharsets.UTF_8));
+        Assert.assertSame(json, store.offersJson("p1"));
+
+        store.addOffer(new OfferRequest(3, "FLATX", 10, Collections.singletonList("p1")));
+        Assert.assertNotSame(json, store.offersJson("p1"));
+        Assert.assertEquals("[]", new String(store.offersJson("p9"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void indexesManyRestaurants() {
+        CompletableFuture<?>[] added = new CompletableFuture<?>[50_000];
+        for (int r = 0; r < added.length; r++) {
+            added[r] = store.submit(new OfferRequest(r, "FLATX", 1 + r % 100, Collections.singletonList("p1")));
+        }
+        CompletableFuture.allOf(added).join();
+        Assert.assertEquals(added.length, store.size());
+        for (int r = 0; r < added.length; r++) {
+            Assert.assertEquals(200 - (1 + r % 100), store.applyOffer(r, "p1", 200));
+        }
+    }
+
+    @Test
+    public void shardsRestaurantsAcrossWriters() {
+        try (OfferStore sharded = new OfferStore(1000, 64, 4, OfferJournal.NONE, OfferListener.NONE)) {
+            CompletableFuture<?>[] added = new CompletableFuture<?>[1000];
+            for (int r = 0; r < added.length; r++) {
+                added[r] = sharded.submit(new OfferRequest(r, "FLATX", 1 + r % 100, Arrays.asList("p1", "p2")));
+            }
+            CompletableFuture.allOf(added).join();
+
+            Assert.assertEquals(4, sharded.getShardCount());
+            Assert.assertEquals(2 * added.length, sharded.size());
+            for (int r = 0; r < added.length; r++) {
+                Assert.assertEquals(200 - (1 + r % 100), sharded.applyOffer(r, "p2", 200));
+            }
+            Assert.assertEquals(added.length, sharded.getIngestionStats().getApplied());
+        }
+    }
+
+    @Test
+    public void storesEntriesOffHeap() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        try (OfferStore offHeap = new OfferStore(1000, 64, 2, 100, OfferStorage.OFF_HEAP, OfferJournal.NONE,
+                OfferListener.NONE, now::get)) {
+            CompletableFuture<?>[] added = new CompletableFuture<?>[1000];
+            for (int r = 0; r < added.length; r++) {
+                added[r] = offHeap.submit(new OfferRequest(r, "FLATX", 1 + r % 100, Arrays.asList("p1", "p2")));
+            }
+            CompletableFuture.allOf(added).join();
+            offHeap.addOffer(new OfferRequest(7, "FLATX%", 10, Collections.singletonList("p1")));
+            offHeap.addOffer(windowed(2000, "FLATX", 10, null, 1_000_100L, "p1"));
+
+            Assert.assertEquals(2 * added.length + 1, offHeap.size());
+            for (int r = 0; r < added.length; r++) {
+                Assert.assertEquals(200 - (1 + r % 100), offHeap.applyOffer(r, "p2", 200));
+            }
+            Assert.assertEquals(180, offHeap.applyOffer(7, "p1", 200));
+            Assert.assertEquals(190, offHeap.applyOffer(2000, "p1", 200));
+
+            now.set(1_000_100);
+            offHeap.runSchedule().join();
+            Assert.assertNull(offHeap.find(2000, "p1"));
+            Assert.assertEquals(2 * added.length, offHeap.size());
+            Assert.assertTrue(new String(offHeap.offersJson("p1"), StandardCharsets.UTF_8)
+                    .startsWith("[{\"restaurantId\":0,\"offerType\":\"FLATX\",\"discount\":1,"));
+        }
+    }
+
+    @Test
+    public void spreadsSequentialRestaurantIdsEvenly() {
+        int[] perShard = new int[8];
+        for (int r = 0; r < 80_000; r++) {
+            perShard[OfferStore.shardIndex(r, perShard.length)]++;
+        }
+        for (int count : perShard) {
+            Assert.assertTrue("uneven shard: " + count, count > 9_000 && count < 11_000);
+        }
+    }
+
+    @Test
+    public void publishesEveryOfferAtomically() throws Exception {
+        AtomicBoolean torn = new AtomicBoolean();
+        AtomicBoolean done = new AtomicBoolean();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                for (int r = 0; r < 1000; r++) {
+                    // p1 is read first, so if it's visible p2 must be too.
+                    if (store.find(r, "p1") != null && store.find(r, "p2") == null) {
+                        torn.set(true);
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int r = 0; r < 1000; r++) {
+            store.submit(new OfferRequest(r, "FLATX", 10, Arrays.asList("p1", "p2")));
+        }
+        store.addOffer(new OfferRequest(0, "FLATX", 10, Collections.singletonList("p1")));
+        done.set(true);
+        reader.join();
+        Assert.assertFalse(torn.get());
+        Assert.assertEquals(1001, store.getIngestionStats().getApplied());
+    }
+
+    private static OfferRequest windowed(int restaurantId, String type, int discount, Long start, Long end,
+                                         String... segments) {
+        OfferRequest offer = new OfferRequest(restaurantId, type, discount, Arrays.asList(segments));
+        offer.setStartTime(start);
+        offer.setEndTime(end);
+        return offer;
+    }
+
+    @Test
+    public void activatesAndExpiresScheduledOffers() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        try (OfferStore scheduled = new OfferStore(100, 16, 1, 100, OfferStorage.HEAP, OfferJournal.NONE,
+                OfferListener.NONE, now::get)) {
+            scheduled.addOffer(new OfferRequest(1, "FLATX", 10, Collections.singletonList("p1")));
+            Assert.assertTrue(scheduled.addOffer(windowed(1, "FLATX", 30, 1_000_500L, 1_002_000L, "p1")));
+            Assert.assertTrue(scheduled.addOffer(windowed(1, "FLATX%", 50, null, 1_001_000L, "p1")));
+            Assert.assertEquals(100, scheduled.applyOffer(1, "p1", 200));
+
+            now.set(1_000_500);
+            scheduled.runSchedule().join();
+            Assert.assertEquals(100, scheduled.applyOffer(1, "p1", 200));
+            Assert.assertEquals(20, scheduled.applyOffer(1, "p1", 50));
+
+            now.set(1_001_000);
+            scheduled.runSchedule().join();
+            Assert.assertEquals(170, scheduled.applyOffer(1, "p1", 200));
+
+            now.set(1_002_000);
+            scheduled.runSchedule().join();
+            Assert.assertEquals(190, scheduled.applyOffer(1, "p1", 200));
+            Assert.assertEquals(0, scheduled.getScheduledCount());
+        }
+    }
+
+    @Test
+    public void dropsPairsWhoseOnlyOfferExpired() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        try (OfferStore scheduled = new OfferStore(100, 16, 1, 100, OfferStorage.HEAP, OfferJournal.NONE,
+                OfferListener.NONE, now::get)) {
+            scheduled.addOffer(new OfferRequest(1, "FLATX", 10, Collections.singletonList("p1")));
+            scheduled.addOffer(windowed(2, "FLATX", 10, 1_000_000L, 1_000_100L, "p1", "p2"));
+            Assert.assertTrue(scheduled.hasOffers(2));
+            Assert.assertEquals(3, scheduled.size());
+
+            now.set(1_000_100);
+            scheduled.runSchedule().join();
+            Assert.assertNull(scheduled.find(2, "p1"));
+            Assert.assertFalse(scheduled.hasOffers(2));
+            Assert.assertEquals(1, scheduled.size());
+            Assert.assertEquals("[{\"restaurantId\":1,\"offerType\":\"FLATX\",\"discount\":10,\"segments\":[\"p1\"]}]",
+                    new String(scheduled.offersJson("p1"), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void rejectsEmptyOrPastWindows() {
+        Assert.assertFalse(store.addOffer(windowed(1, "FLATX", 10, 2_000L, 2_000L, "p1")));
+        Assert.assertFalse(store.addOffer(windowed(1, "FLATX", 10, -1L, 2_000L, "p1")));
+        // Well-formed but already over: accepted and never applied.
+        Assert.assertTrue(store.addOffer(windowed(1, "FLATX", 10, 1_000L, 2_000L, "p1")));
+        Assert.assertEquals(200, store.applyOffer(1, "p1", 200));
+        Assert.assertEquals(0, store.getScheduledCount());
+    }
+
+    @Test
+    public void expiresManyScheduledOffersIncrementally() {
+        AtomicLong now = new AtomicLong(0);
+        try (OfferStore scheduled = new OfferStore(100_000, 4096, 2, 1000, OfferStorage.HEAP, OfferJournal.NONE,
+                OfferListener.NONE, now::get)) {
+            int count = 100_000;
+            CompletableFuture<?>[] added = new CompletableFuture<?>[count];
+            for (int r = 0; r < count; r++) {
+                // One offer ending every second for a bit over a day.
+                added[r] = scheduled.submit(windowed(r, "FLATX", 10, null, 1000L * (r + 1), "p1"));
+            }
+            CompletableFuture.allOf(added).join();
+            Assert.assertEquals(count, scheduled.size());
+
+            for (int step = 1; step <= 4; step++) {
+                now.set(1000L * step * count / 4);
+                scheduled.runSchedule().join();
+                Assert.assertEquals(count - step * count / 4, scheduled.size());
+                Assert.assertEquals(count - step * count / 4, scheduled.getScheduledCount());
+            }
+        }
+    }
+}
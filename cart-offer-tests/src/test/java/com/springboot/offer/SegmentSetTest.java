@@ -0,0 +1,53 @@
+package com.springboot.offer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SegmentSetTest {
+
+    @Test
+    public void testsMembershipAcrossWords() {
+        SegmentSet set = SegmentSet.of(0, 63, 64, 200);
+
+        Assert.assertEquals(4, set.size());
+        Assert.assertTrue(set.contains(63));
+        Assert.assertTrue(set.contains(64));
+        Assert.assertTrue(set.contains(200));
+        Assert.assertFalse(set.contains(1));
+        Assert.assertFalse(set.contains(1000));
+        Assert.assertFalse(set.contains(-1));
+    }
+
+    @Test
+    public void iteratesInAscendingOrder() {
+        List<Integer> ids = new ArrayList<>();
+        SegmentSet.of(130, 5, 64, 5).forEach(ids::add);
+        Assert.assertEquals(Arrays.asList(5, 64, 130), ids);
+    }
+
+    @Test
+    public void unionSharesSupersets() {
+        SegmentSet small = SegmentSet.of(1, 2);
+        SegmentSet large = SegmentSet.of(1, 2, 100);
+
+        Assert.assertSame(large, small.or(large));
+        Assert.assertSame(large, large.or(small));
+        Assert.assertEquals(SegmentSet.of(1, 2, 3, 100), large.or(SegmentSet.of(3)));
+        Assert.assertTrue(SegmentSet.of().isEmpty());
+        Assert.assertSame(small, small.or(SegmentSet.EMPTY));
+    }
+
+    @Test
+    public void differenceDropsEmptyWords() {
+        SegmentSet set = SegmentSet.of(1, 2, 100);
+
+        Assert.assertEquals(SegmentSet.of(1, 2), set.andNot(SegmentSet.of(100)));
+        Assert.assertSame(set, set.andNot(SegmentSet.of(3, 200)));
+        Assert.assertTrue(set.andNot(set).isEmpty());
+        Assert.assertSame(SegmentSet.EMPTY, SegmentSet.of(5).andNot(SegmentSet.of(5)));
+    }
+}
@@ -0,0 +1,72 @@
+package com.springboot.offer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TimingWheelTest {
+
+    @Test
+    public void firesOnTheTickOfTheDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 1_000);
+        List<String> fired = new ArrayList<>();
+        wheel.schedule(1_025, "a");
+        wheel.schedule(1_040, "b");
+
+        wheel.advance(1_029, fired::add);
+        Assert.assertEquals(Collections.emptyList(), fired);
+        wheel.advance(1_030, fired::add);
+        Assert.assertEquals(Collections.singletonList("a"), fired);
+        wheel.advance(1_049, fired::add);
+        Assert.assertEquals(Arrays.asList("a", "b"), fired);
+        Assert.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void firesPastDeadlinesOnNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 1_000);
+        List<String> fired = new ArrayList<>();
+        wheel.schedule(500, "late");
+
+        wheel.advance(1_010, fired::add);
+        Assert.assertEquals(Collections.singletonList("late"), fired);
+    }
+
+    @Test
+    public void cascadesFarDeadlinesDownInOrder() {
+        long day = 86_400_000L;
+        TimingWheel<Long> wheel = new TimingWheel<>(100, 0);
+        long[] deadlines = {365 * day, 100, 7 * day, day + 50, 6_400, 6_500, 409_600};
+        for (long deadline : deadlines) {
+            wheel.schedule(deadline, deadline);
+        }
+        List<Long> fired = new ArrayList<>();
+        for (long now = 0; now <= 366 * day; now += 3_600_000L) {
+            int before = fired.size();
+            wheel.advance(now, fired::add);
+            for (int i = before; i < fired.size(); i++) {
+                Assert.assertTrue("fired early: " + fired.get(i), fired.get(i) <= now);
+                Assert.assertTrue("fired late: " + fired.get(i), fired.get(i) > now - 3_600_000L);
+            }
+        }
+        Assert.assertEquals(Arrays.asList(100L, 6_400L, 6_500L, 409_600L, day + 50, 7 * day, 365 * day), fired);
+        Assert.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void catchesUpWhenIdle() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 0);
+        List<String> fired = new ArrayList<>();
+        wheel.advance(Long.MAX_VALUE / 2, fired::add);
+        wheel.schedule(Long.MAX_VALUE / 2 + 5, "next");
+
+        wheel.advance(Long.MAX_VALUE / 2 + 4, fired::add);
+        Assert.assertEquals(Collections.emptyList(), fired);
+        wheel.advance(Long.MAX_VALUE / 2 + 5, fired::add);
+        Assert.assertEquals(Collections.singletonList("next"), fired);
+    }
+}
@@ -0,0 +1,137 @@
+package com.springboot.persistence;
+
+import com.springboot.controller.OfferRequest;
+import com.springboot.offer.OfferListener;
+import com.springboot.offer.OfferStore;
+import com.springboot.offer.OfferType;
+import com.springboot.offer.ScheduledOffer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+public class FileOfferJournalTest {
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("offer-journal");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private OfferStore open(long compactionBytes) throws IOException {
+        return new OfferStore(100, 16, new FileOfferJournal(directory, compactionBytes));
+    }
+
+    @Test
+    public void recoversOffersFromLog() throws IOException {
+        try (OfferStore store = open(Long.MAX_VALUE)) {
+            store.addOffer(new OfferRequest(1, "FLATX", 10, Arrays.asList("p1", "p2")));
+            store.addOffer(new OfferRequest(1, "FLATX%", 10, Collections.singletonList("p1")));
+        }
+        try (OfferStore store = open(Long.MAX_VALUE)) {
+            Assert.assertEquals(180, store.applyOffer(1, "p1", 200));
+            Assert.assertEquals(190, store.applyOffer(1, "p2", 200));
+        }
+    }
+
+    @Test
+    public void recoversOffersFromSnapshotAndLogTail() throws IOException {
+        try (OfferStore store = open(1)) {
+            // Every batch exceeds the threshold, so each one is compacted.
+            store.addOffer(new OfferRequest(1, "FLATX", 10, Collections.singletonList("p1")));
+            store.addOffer(new OfferRequest(2, "FLATX%", 20, Collections.singletonList("p1")));
+        }
+        Assert.assertTrue(Files.exists(directory.resolve(FileOfferJournal.SNAPSHOT_FILE)));
+        try (OfferStore store = open(Long.MAX_VALUE)) {
+            store.addOffer(new OfferRequest(3, "FLATX", 5, Collections.singletonList("p1")));
+        }
+        try (OfferStore store = open(Long.MAX_VALUE)) {
+            Assert.assertEquals(190, store.applyOffer(1, "p1", 200));
+            Assert.assertEquals(160, store.applyOffer(2, "p1", 200));
+            Assert.assertEquals(195, store.applyOffer(3, "p1", 200));
+        }
+    }
+
+    @Test
+    public void recoversScheduledOffersWithTheirWindow() throws IOException {
+        long now = System.currentTimeMillis();
+        OfferRequest active = new OfferRequest(1, "FLATX", 30, Collections.singletonList("p1"));
+        active.setEndTime(now + 3_600_000);
+        OfferRequest upcoming = new OfferRequest(2, "FLATX", 30, Collections.singletonList("p1"));
+        upcoming.setStartTime(now + 3_600_000);
+        try (OfferStore store = open(1)) {
+            store.addOffer(new OfferRequest(1, "FLATX", 10, Collections.singletonList("p1")));
+            store.addOffer(active);
+            store.addOffer(upcoming);
+        }
+        try (OfferStore store = open(Long.MAX_VALUE)) {
+            Assert.assertEquals(2, store.getScheduledCount());
+            Assert.assertEquals(170, store.applyOffer(1, "p1", 200));
+            Assert.assertEquals(10, store.find(1, "p1").getBaseFlatDiscount());
+            Assert.assertEquals(200, store.applyOffer(2, "p1", 200));
+        }
+    }
+
+    @Test
+    public void recoversIntoDifferentShardCount() throws IOException {
+        try (OfferStore store = new OfferStore(100, 16, 4, new FileOfferJournal(directory, 1),
+                OfferListener.NONE)) {
+            for (int r = 0; r < 20; r++) {
+                store.addOffer(new OfferRequest(r, "FLATX", 10, Collections.singletonList("p1")));
+            }
+        }
+        try (OfferStore store = open(Long.MAX_VALUE)) {
+            Assert.assertEquals(20, store.size());
+            Assert.assertEquals(190, store.applyOffer(19, "p1", 200));
+        }
+    }
+
+    @Test
+    public void refusesSegmentNamesLongerThanAShortLength() throws IOException {
+        String tooLong = String.join("", Collections.nCopies(FileOfferJournal.MAX_SEGMENT_NAME_BYTES + 1, "a"));
+        try (FileOfferJournal journal = new FileOfferJournal(directory, Long.MAX_VALUE)) {
+            journal.append(1, OfferType.FLATX, 10, new String[]{tooLong}, ScheduledOffer.NO_START,
+                    ScheduledOffer.NO_END);
+            Assert.fail("Expected IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void truncatesTornTail() throws IOException {
+        try (OfferStore store = open(Long.MAX_VALUE)) {
+            store.addOffer(new OfferRequest(1, "FLATX", 10, Collections.singletonList("p1")));
+            store.addOffer(new OfferRequest(2, "FLATX", 10, Collections.singletonList("p1")));
+        }
+        Path log = directory.resolve(FileOfferJournal.LOG_FILE);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        try (OfferStore store = open(Long.MAX_VALUE)) {
+            Assert.assertEquals(190, store.applyOffer(1, "p1", 200));
+            Assert.assertEquals(200, store.applyOffer(2, "p1", 200));
+            store.addOffer(new OfferRequest(3, "FLATX", 10, Collections.singletonList("p1")));
+        }
+        try (OfferStore store = open(Long.MAX_VALUE)) {
+            Assert.assertEquals(190, store.applyOffer(3, "p1", 200));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.springboot.ratelimit;
+
+import com.springboot.metrics.ApplyOfferMetrics;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RateLimitFilterTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final ApplyOfferMetrics metrics = new ApplyOfferMetrics();
+    private final RateLimitFilter filter = new RateLimitFilter(
+            new TokenBucketLimiter(16, 1, 1, now::get), new TokenBucketLimiter(16, 100, 1, now::get), metrics);
+
+    private static MockHttpServletRequest applyOffer(int userId, String userIdHeader) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/cart/apply_offer");
+        request.setContent(("{\"cart_value\":200,\"user_id\":" + userId + ",\"restaurant_id\":1}")
+                .getBytes(StandardCharsets.UTF_8));
+        if (userIdHeader != null) {
+            request.addHeader("user_id", userIdHeader);
+        }
+        return request;
+    }
+
+    private int status(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response.getStatus();
+    }
+
+    @Test
+    public void keysOnBodyUserIdWithoutHeader() throws Exception {
+        Assert.assertEquals(200, status(applyOffer(1, null)));
+        Assert.assertEquals(429, status(applyOffer(1, null)));
+        // Same remote address, different user.
+        Assert.assertEquals(200, status(applyOffer(2, null)));
+        Assert.assertEquals(1, metrics.getRateLimited());
+    }
+
+    @Test
+    public void ignoresSpoofedUserIdHeader() throws Exception {
+        Assert.assertEquals(200, status(applyOffer(1, "1")));
+        Assert.assertEquals(429, status(applyOffer(1, "2")));
+        Assert.assertEquals(429, status(applyOffer(1, "not-a-user")));
+        // A header naming an exhausted user does not limit someone else's cart.
+        Assert.assertEquals(200, status(applyOffer(3, "1")));
+    }
+
+    @Test
+    public void passesBodyThrough() throws Exception {
+        MockHttpServletRequest request = applyOffer(1, null);
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        Assert.assertArrayEquals(request.getContentAsByteArray(),
+                StreamUtils.copyToByteArray(chain.getRequest().getInputStream()));
+    }
+}
@@ -0,0 +1,50 @@
+package com.springboot.ratelimit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TokenBucketLimiterTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    public void allowsBurstThenRejects() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(16, 5, 1, now::get);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(limiter.tryAcquire(1));
+        }
+        Assert.assertFalse(limiter.tryAcquire(1));
+    }
+
+    @Test
+    public void refillsOverTime() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(16, 2, 10, now::get);
+        Assert.assertTrue(limiter.tryAcquire(1));
+        Assert.assertTrue(limiter.tryAcquire(1));
+        Assert.assertFalse(limiter.tryAcquire(1));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        Assert.assertTrue(limiter.tryAcquire(1));
+        Assert.assertFalse(limiter.tryAcquire(1));
+    }
+
+    @Test
+    public void keepsClientsApart() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(16, 1, 1, now::get);
+        Assert.assertTrue(limiter.tryAcquire(1));
+        Assert.assertFalse(limiter.tryAcquire(1));
+        Assert.assertTrue(limiter.tryAcquire(2));
+    }
+
+    @Test
+    public void reusesIdleSlotsWithinFixedBudget() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(4, 1, 1, now::get);
+        for (int client = 0; client < 1000; client++) {
+            now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+            Assert.assertTrue(limiter.tryAcquire(client));
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.springboot.replication;
+
+import com.springboot.Application;
+import com.springboot.offer.OfferStore;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs several app instances in this JVM on localhost ports, peered with each
+ * other, and checks that offers registered on one become visible on the rest.
+ */
+public class OfferReplicationTest {
+
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+    @After
+    public void stopNodes() {
+        nodes.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    public void replicatesOffersBothWays() throws Exception {
+        int portA = freePort();
+        int portB = freePort();
+        ConfigurableApplicationContext a = start(portA, portB, 100000);
+        ConfigurableApplicationContext b = start(portB, portA, 100000);
+
+        addOffer(portA, 1, "FLATX", 10, "p1");
+        addOffer(portB, 2, "FLATX%", 10, "p2");
+
+        awaitTrue(() -> store(b).find(1, "p1") != null);
+        awaitTrue(() -> store(a).find(2, "p2") != null);
+        Assert.assertEquals(190, store(b).applyOffer(1, "p1", 200));
+        Assert.assertEquals(180, store(a).applyOffer(2, "p2", 200));
+        // Replicated offers are not re-published, so nothing echoes back.
+        Assert.assertEquals(1, a.getBean(ReplicationLog.class).getLastVersion());
+        Assert.assertEquals(1, b.getBean(ReplicationLog.class).getLastVersion());
+    }
+
+    @Test
+    public void catchesUpFromSnapshotAndTail() throws Exception {
+        int portA = freePort();
+        int portB = freePort();
+        // A retains only two deltas, so a late joiner cannot start from the log.
+        ConfigurableApplicationContext a = start(portA, 0, 2);
+        for (int r = 1; r <= 5; r++) {
+            addOffer(portA, r, "FLATX", r, "p1");
+        }
+
+        ConfigurableApplicationContext b = start(portB, portA, 100000);
+        awaitTrue(() -> store(b).size() == 5);
+        addOffer(portA, 6, "FLATX", 6, "p1");
+        awaitTrue(() -> store(b).find(6, "p1") != null);
+
+        ReplicationClient.Peer peer = b.getBean(ReplicationClient.class).getPeers().get(0);
+        Assert.assertEquals(1, peer.snapshots);
+        Assert.assertEquals(6, peer.version);
+        Assert.assertEquals(194, store(b).applyOffer(6, "p1", 200));
+    }
+
+    @Test
+    public void pagesSnapshotOfEntriesAndScheduledOffers() throws Exception {
+        int portA = freePort();
+        int portB = freePort();
+        ConfigurableApplicationContext a = start(portA, 0, 2, 2);
+        for (int r = 1; r <= 5; r++) {
+            addOffer(portA, r, "FLATX", r, "p1");
+        }
+        long now = System.currentTimeMillis();
+        for (int r = 7; r <= 9; r++) {
+            addOffer(portA, r, "FLATX", r, "p1", ",\"startTime\":" + (now - 60000)
+                    + ",\"endTime\":" + (now + 3600000));
+        }
+        awaitTrue(() -> store(a).getScheduledCount() == 3);
+
+        ConfigurableApplicationContext b = start(portB, portA, 100000, 2);
+        awaitTrue(() -> store(b).getScheduledCount() == 3);
+        awaitTrue(() -> store(b).find(5, "p1") != null);
+
+        ReplicationClient.Peer peer = b.getBean(ReplicationClient.class).getPeers().get(0);
+        Assert.assertEquals(1, peer.snapshots);
+        Assert.assertEquals(0, peer.snapshotCursor);
+        Assert.assertEquals(8, peer.version);
+        for (int r = 1; r <= 5; r++) {
+            Assert.assertEquals(200 - r, store(b).applyOffer(r, "p1", 200));
+        }
+    }
+
+    @Test
+    public void changeStreamRequiresAdmin() throws Exception {
+        int port = freePort();
+        start(port, 0, 100000);
+        Assert.assertEquals(403, changesStatus(port, null));
+        Assert.assertEquals(403, changesStatus(port, "customer"));
+        Assert.assertEquals(200, changesStatus(port, "admin"));
+    }
+
+    private ConfigurableApplicationContext start(int port, int peerPort, int logCapacity) {
+        return start(port, peerPort, logCapacity, 1000);
+    }
+
+    private ConfigurableApplicationContext start(int port, int peerPort, int logCapacity, int batchSize) {
+        // Command-line arguments, unlike default properties, take precedence over application.properties.
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                .run(
+                        "--server.port=" + port,
+                        "--replication.peers=" + (peerPort == 0 ? "" : "http://localhost:" + peerPort),
+                        "--replication.poll-interval-ms=20",
+                        "--replication.batch-size=" + batchSize,
+                        "--replication.log-capacity=" + logCapacity);
+        nodes.add(context);
+        return context;
+    }
+
+    private static OfferStore store(ConfigurableApplicationContext node) {
+        return node.getBean(OfferStore.class);
+    }
+
+    private static int changesStatus(int port, String role) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection)
+                new URL("http://localhost:" + port + "/internal/replication/changes").openConnection();
+        if (role != null) {
+            connection.setRequestProperty("user_role", role);
+        }
+        int status = connection.getResponseCode();
+        connection.disconnect();
+        return status;
+    }
+
+    private static void addOffer(int port, int restaurantId, String offerType, int discount, String segment)
+            throws IOException {
+        addOffer(port, restaurantId, offerType, discount, segment, "");
+    }
+
+    private static void addOffer(int port, int restaurantId, String offerType, int discount, String segment,
+                                 String extraFields) throws IOException {
+        HttpURLConnection connection =
+                (HttpURLConnection) new URL("http://localhost:" + port + "/api/v1/offer").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setRequestProperty("user_role", "admin");
+        String body = "{\"restaurantId\":" + restaurantId + ",\"offerType\":\"" + offerType
+                + "\",\"discount\":" + discount + ",\"segments\":[\"" + segment + "\"]" + extraFields + "}";
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        Assert.assertEquals(200, connection.getResponseCode());
+        connection.disconnect();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue("timed out waiting for replication", System.nanoTime() < deadline);
+            Thread.sleep(20);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.springboot.replication;
+
+import com.springboot.controller.OfferRequest;
+import com.springboot.offer.OfferJournal;
+import com.springboot.offer.OfferStore;
+import com.springboot.offer.OfferType;
+import com.springboot.offer.ScheduledOffer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class ReplicationLogTest {
+
+    private final ReplicationLog log = new ReplicationLog(4);
+    private final OfferStore store = new OfferStore(100, 16, 1, OfferJournal.NONE, log);
+    private final ReplicationSource source = new ReplicationSource(store, log);
+
+    @After
+    public void closeStore() {
+        store.close();
+    }
+
+    @Test
+    public void recordsLocalOffersOnly() {
+        store.addOffer(new OfferRequest(1, "FLATX", 10, Arrays.asList("p1", "p2")));
+        store.submitReplica(2, OfferType.FLATX, 5, Collections.singletonList("p1"),
+                ScheduledOffer.NO_START, ScheduledOffer.NO_END).join();
+
+        List<OfferDelta> deltas = log.since(0, 10);
+        Assert.assertEquals(1, deltas.size());
+        Assert.assertEquals(1, deltas.get(0).getVersion());
+        Assert.assertEquals(1, deltas.get(0).getRestaurantId());
+        Assert.assertEquals(Arrays.asList("p1", "p2"), Arrays.asList(deltas.get(0).getSegments()));
+    }
+
+    @Test
+    public void servesTailWhileRetained() {
+        for (int r = 1; r <= 3; r++) {
+            store.addOffer(new OfferRequest(r, "FLATX", 10, Collections.singletonList("p1")));
+        }
+
+        ReplicationBatch batch = source.changes(log.getEpoch(), 1, 0, 1);
+        Assert.assertFalse(batch.isSnapshot());
+        Assert.assertEquals(2, batch.getVersion());
+        Assert.assertEquals(3, batch.getLatest());
+        Assert.assertEquals(2, batch.getDeltas().get(0).getRestaurantId());
+    }
+
+    @Test
+    public void fallsBackToSnapshot() {
+        for (int r = 1; r <= 6; r++) {
+            store.addOffer(new OfferRequest(r, "FLATX", 10, Collections.singletonList("p1")));
+        }
+        store.addOffer(new OfferRequest(1, "FLATX%", 20, Collections.singletonList("p1")));
+
+        Assert.assertNull(log.since(1, 10));
+        // Cursor too old, and a cursor from another epoch.
+        for (ReplicationBatch batch : Arrays.asList(source.changes(log.getEpoch(), 1, 0, 10),
+                source.changes(log.getEpoch() + 1, 7, 0, 10))) {
+            Assert.assertTrue(batch.isSnapshot());
+            Assert.assertEquals(7, batch.getVersion());
+            Assert.assertEquals(7, batch.getDeltas().size());
+        }
+    }
+
+    @Test
+    public void pagesSnapshotByCursor() {
+        for (int r = 1; r <= 6; r++) {
+            store.addOffer(new OfferRequest(r, "FLATX", 10, Collections.singletonList("p1")));
+        }
+        store.addOffer(new OfferRequest(1, "FLATX%", 20, Collections.singletonList("p1")));
+
+        Set<Integer> restaurants = new HashSet<>();
+        int deltas = 0;
+        int pages = 0;
+        ReplicationBatch batch = source.changes(log.getEpoch(), 1, 0, 2);
+        while (true) {
+            Assert.assertTrue(batch.isSnapshot());
+            Assert.assertEquals(7, batch.getVersion());
+            pages++;
+            deltas += batch.getDeltas().size();
+            batch.getDeltas().forEach(delta -> restaurants.add(delta.getRestaurantId()));
+            if (batch.getCursor() == 0) {
+                break;
+            }
+            batch = source.changes(batch.getEpoch(), batch.getVersion(), batch.getCursor(), 2);
+        }
+        Assert.assertTrue(pages > 1);
+        Assert.assertEquals(7, deltas);
+        Assert.assertEquals(6, restaurants.size());
+    }
+
+    @Test
+    public void roundTripsThroughCodec() throws Exception {
+        store.addOffer(new OfferRequest(7, "FLATX%", 15, Arrays.asList("p1", "p\"2")));
+        ReplicationBatch batch = ReplicationCodec.read(ReplicationCodec.write(source.changes(log.getEpoch(), 0, 0, 10)));
+
+        Assert.assertEquals(log.getEpoch(), batch.getEpoch());
+        Assert.assertEquals(1, batch.getVersion());
+        OfferDelta delta = batch.getDeltas().get(0);
+        Assert.assertEquals(OfferType.FLATX_PERCENT, delta.getType());
+        Assert.assertEquals(15, delta.getDiscount());
+        Assert.assertEquals(Arrays.asList("p1", "p\"2"), Arrays.asList(delta.getSegments()));
+        Assert.assertTrue(delta.getPublishedAtMillis() > 0);
+    }
+}
@@ -0,0 +1,40 @@
+package com.springboot.security;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.EnumSet;
+
+public class PermissionMatrixTest {
+
+    @Test
+    public void defaultsMatchRoleExpectations() {
+        PermissionMatrix matrix = PermissionMatrix.defaults();
+        Assert.assertTrue(matrix.isAllowed(Role.ADMIN, Endpoint.ADD_OFFER));
+        Assert.assertTrue(matrix.isAllowed(Role.CUSTOMER, Endpoint.APPLY_OFFER));
+        Assert.assertFalse(matrix.isAllowed(Role.CUSTOMER, Endpoint.ADD_OFFER));
+        Assert.assertFalse(matrix.isAllowed(Role.GUEST, Endpoint.ADD_OFFER));
+        Assert.assertFalse(matrix.isAllowed(Role.GUEST, Endpoint.APPLY_OFFER));
+        Assert.assertTrue(matrix.isAllowed(Role.ADMIN, Endpoint.READ_METRICS));
+        Assert.assertFalse(matrix.isAllowed(Role.CUSTOMER, Endpoint.READ_METRICS));
+        Assert.assertFalse(matrix.isAllowed(Role.GUEST, Endpoint.READ_METRICS));
+        Assert.assertFalse(matrix.isAllowed(Role.CUSTOMER, Endpoint.REPLICATION_CHANGES));
+    }
+
+    @Test
+    public void grantReplacesRolePermissions() {
+        PermissionMatrix matrix = new PermissionMatrix.Builder()
+                .grant(Role.GUEST, EnumSet.of(Endpoint.APPLY_OFFER))
+                .build();
+        Assert.assertTrue(matrix.isAllowed(Role.GUEST, Endpoint.APPLY_OFFER));
+        Assert.assertFalse(matrix.isAllowed(Role.GUEST, Endpoint.READ_OFFERS));
+        Assert.assertFalse(matrix.isAllowed(Role.ADMIN, Endpoint.ADD_OFFER));
+    }
+
+    @Test
+    public void resolvesKnownRolesOnly() {
+        Assert.assertSame(Role.ADMIN, Role.fromHeader("admin"));
+        Assert.assertNull(Role.fromHeader("unauthorized"));
+        Assert.assertNull(Role.fromHeader(null));
+    }
+}
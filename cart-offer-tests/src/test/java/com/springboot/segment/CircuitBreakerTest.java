@@ -0,0 +1,71 @@
+package com.springboot.segment;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 1000, now::get);
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertFalse(breaker.tryAcquire());
+        Assert.assertEquals(1, breaker.getTrips());
+        Assert.assertEquals(1, breaker.getShortCircuited());
+    }
+
+    @Test
+    public void letsOneProbeThroughAfterOpenPeriod() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1000, now::get);
+        breaker.onFailure();
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        Assert.assertFalse(breaker.tryAcquire());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        Assert.assertTrue(breaker.tryAcquire());
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        Assert.assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void failedProbeReopens() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1000, now::get);
+        breaker.onFailure();
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        Assert.assertTrue(breaker.tryAcquire());
+
+        breaker.onFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertEquals(2, breaker.getTrips());
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        Assert.assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void lostProbeDoesNotKeepBreakerHalfOpen() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1000, now::get);
+        breaker.onFailure();
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        Assert.assertTrue(breaker.tryAcquire());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        Assert.assertTrue(breaker.tryAcquire());
+    }
+}
@@ -0,0 +1,117 @@
+package com.springboot.segment;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SegmentCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void cachesSegmentUntilTtlExpires() {
+        SegmentCache cache = new SegmentCache(userId -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture("p1");
+        }, 10, 1000, 100, now::get);
+
+        Assert.assertEquals("p1", cache.get(1));
+        Assert.assertEquals("p1", cache.get(1));
+        Assert.assertEquals(1, loads.get());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1001));
+        Assert.assertEquals("p1", cache.get(1));
+        Assert.assertEquals(2, loads.get());
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void cachesMissingSegmentWithNegativeTtl() {
+        SegmentCache cache = new SegmentCache(userId -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        }, 10, 1000, 100, now::get);
+
+        Assert.assertNull(cache.get(1));
+        Assert.assertNull(cache.get(1));
+        Assert.assertEquals(1, loads.get());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(101));
+        Assert.assertNull(cache.get(1));
+        Assert.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void coalescesConcurrentMisses() throws Exception {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        SegmentCache cache = new SegmentCache(userId -> {
+            loads.incrementAndGet();
+            return upstream;
+        }, 10, 1000, 100, now::get);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            Future<?>[] results = new Future<?>[8];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = pool.submit(() -> cache.get(1));
+            }
+            Thread.sleep(100);
+            upstream.complete("p1");
+            for (Future<?> result : results) {
+                Assert.assertEquals("p1", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        Assert.assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void doesNotCacheFailedLoad() {
+        AtomicInteger loads = new AtomicInteger();
+        SegmentCache cache = new SegmentCache(userId -> loads.incrementAndGet() == 1
+                ? CompletableFuture.failedFuture(SegmentUnavailableException.INSTANCE)
+                : CompletableFuture.completedFuture("p1"), 10, 1000, 100, now::get);
+        try {
+            cache.get(1);
+            Assert.fail("Expected SegmentUnavailableException");
+        } catch (SegmentUnavailableException expected) {
+        }
+        Assert.assertEquals("p1", cache.get(1));
+        Assert.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void staysWithinBound() {
+        SegmentCache cache = new SegmentCache(userId -> CompletableFuture.completedFuture("p1"), 100, 1000, 100,
+                now::get);
+        for (int userId = 0; userId < 1000; userId++) {
+            cache.get(userId);
+        }
+        Assert.assertTrue(cache.size() <= 100);
+    }
+
+    @Test
+    public void evictsToLowWaterMark() {
+        SegmentCache cache = new SegmentCache(userId -> CompletableFuture.completedFuture("p1"), 100, 1000, 100,
+                now::get);
+        for (int userId = 0; userId <= 100; userId++) {
+            cache.get(userId);
+        }
+        Assert.assertEquals(90, cache.size());
+        // The next ten misses fit without another scan.
+        for (int userId = 101; userId <= 110; userId++) {
+            cache.get(userId);
+        }
+        Assert.assertEquals(100, cache.size());
+    }
+}
@@ -0,0 +1,153 @@
+package com.springboot.segment;
+
+import com.springboot.execution.ExecutionMode;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.matchers.Times;
+import org.mockserver.verify.VerificationTimes;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+/**
+ * Hedging and circuit breaking against a MockServer stub of the user segment
+ * service. Every lookup uses a new user so the segment cache never answers.
+ */
+public class UserSegmentClientTest {
+
+    private ClientAndServer mockServer;
+    private UserSegmentClient client;
+
+    @Before
+    public void startMockServer() {
+        mockServer = ClientAndServer.startClientAndServer();
+    }
+
+    @After
+    public void stop() throws Exception {
+        if (client != null) {
+            client.close();
+        }
+        mockServer.stop();
+    }
+
+    private UserSegmentClient client(int timeoutMillis, double hedgePercentile, long minHedgeDelayMillis,
+                                     int failureThreshold, long openMillis) {
+        return new UserSegmentClient("http://localhost:" + mockServer.getLocalPort(), timeoutMillis, 20,
+                1000, 60000, 5000, hedgePercentile, minHedgeDelayMillis, failureThreshold, openMillis,
+                ExecutionMode.PLATFORM);
+    }
+
+    private void respondWithSegment(String userId, Times times, long delayMillis) {
+        mockServer.when(
+                request()
+                        .withMethod("GET")
+                        .withPath("/api/v1/user_segment")
+                        .withQueryStringParameter("user_id", userId),
+                times
+        ).respond(
+                response()
+                        .withStatusCode(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{ \"segment\": \"p1\" }")
+                        .withDelay(TimeUnit.MILLISECONDS, delayMillis)
+        );
+    }
+
+    @Test
+    public void hedgesSlowRequest() {
+        client = client(2000, 95, 50, 20, 1000);
+        respondWithSegment("[0-9]+", Times.unlimited(), 0);
+        for (int userId = 1; userId <= UserSegmentClient.MIN_HEDGE_SAMPLES; userId++) {
+            Assert.assertEquals("p1", client.getSegment(userId));
+        }
+        client.refreshHedgeDelay();
+        Assert.assertTrue(client.getHedgeDelayNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+
+        // Only the first request for the user is slow; the hedge gets the fast answer.
+        mockServer.reset();
+        respondWithSegment("1000", Times.once(), 1500);
+        respondWithSegment("1000", Times.unlimited(), 0);
+        long start = System.nanoTime();
+        Assert.assertEquals("p1", client.getSegment(1000));
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000));
+        Assert.assertEquals(1, client.getHedges());
+        Assert.assertEquals(1, client.getHedgeWins());
+    }
+
+    @Test
+    public void doesNotHedgeBeforeWarmUp() {
+        client = client(2000, 95, 5, 20, 1000);
+        respondWithSegment("1", Times.unlimited(), 300);
+        Assert.assertEquals("p1", client.getSegment(1));
+        Assert.assertEquals(0, client.getHedges());
+        Assert.assertEquals(-1, client.getHedgeDelayNanos());
+    }
+
+    @Test
+    public void opensBreakerOnServerErrorsAndShortCircuits() {
+        client = client(500, 0, 5, 3, 60000);
+        mockServer.when(request().withPath("/api/v1/user_segment")).respond(response().withStatusCode(503));
+        for (int userId = 1; userId <= 3; userId++) {
+            Assert.assertNull(client.getSegment(userId));
+        }
+        Assert.assertEquals(CircuitBreaker.State.OPEN, client.getBreaker().getState());
+
+        Assert.assertNull(client.getSegment(4));
+        Assert.assertEquals(1, client.getBreaker().getShortCircuited());
+        mockServer.verify(request().withPath("/api/v1/user_segment"), VerificationTimes.exactly(3));
+    }
+
+    @Test
+    public void opensBreakerOnTimeouts() {
+        client = client(100, 0, 5, 2, 60000);
+        respondWithSegment("[0-9]+", Times.unlimited(), 500);
+        Assert.assertNull(client.getSegment(1));
+        Assert.assertNull(client.getSegment(2));
+        Assert.assertEquals(CircuitBreaker.State.OPEN, client.getBreaker().getState());
+        Assert.assertEquals(2, client.getFailures());
+    }
+
+    @Test
+    public void closesBreakerAfterSuccessfulProbe() throws Exception {
+        client = client(500, 0, 5, 1, 100);
+        mockServer.when(request().withPath("/api/v1/user_segment"), Times.once())
+                .respond(response().withStatusCode(500));
+        respondWithSegment("[0-9]+", Times.unlimited(), 0);
+        Assert.assertNull(client.getSegment(1));
+        Assert.assertEquals(CircuitBreaker.State.OPEN, client.getBreaker().getState());
+
+        Thread.sleep(150);
+        Assert.assertEquals("p1", client.getSegment(2));
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, client.getBreaker().getState());
+    }
+
+    @Test
+    public void doesNotCacheTimeoutAsMissingSegment() {
+        client = client(300, 0, 5, 5, 60000);
+        respondWithSegment("1", Times.once(), 1000);
+        respondWithSegment("1", Times.unlimited(), 0);
+        try {
+            client.getSegmentAsync(1).join();
+            Assert.fail("Expected SegmentUnavailableException");
+        } catch (CompletionException expected) {
+            Assert.assertSame(SegmentUnavailableException.INSTANCE, expected.getCause());
+        }
+        Assert.assertEquals("p1", client.getSegment(1));
+    }
+
+    @Test
+    public void missingSegmentIsNotAFailure() {
+        client = client(500, 0, 5, 1, 60000);
+        mockServer.when(request().withPath("/api/v1/user_segment"))
+                .respond(response().withStatusCode(200).withBody("{ \"segment\": \"\" }"));
+        Assert.assertNull(client.getSegment(1));
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, client.getBreaker().getState());
+    }
+}